@@ -0,0 +1,113 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.QuizAttemptRequest.AnswerSubmission;
+import com.mavpal.entity.QuizQuestion;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable grading data for one set's questions, in the order the
+ * repository returns them. Question ids, types and correct choices are
+ * kept in parallel primitive arrays, with an open-addressing table from
+ * question id to position, so grading a submission is one pass over its
+ * answers and then one over the questions. Short-answer questions carry a
+ * compiled {@link ShortAnswerMatcher}.
+ */
+public final class AnswerKey {
+
+    static final byte MCQ = 0;
+    static final byte SHORT = 1;
+    static final byte OTHER = 2;
+
+    private static final int NO_CHOICE = -1;
+
+    private final int[] questionIds;
+    private final byte[] types;
+    private final int[] correctIndexes;
+    private final ShortAnswerMatcher[] matchers;
+
+    // Position + 1 of the question whose id hashes to each slot, 0 if free
+    private final int[] slots;
+
+    private AnswerKey(int[] questionIds, byte[] types, int[] correctIndexes, ShortAnswerMatcher[] matchers) {
+        this.questionIds = questionIds;
+        this.types = types;
+        this.correctIndexes = correctIndexes;
+        this.matchers = matchers;
+        this.slots = new int[Integer.highestOneBit(Math.max(1, questionIds.length) * 2) * 2];
+        for (int i = 0; i < questionIds.length; i++) {
+            int slot = slotFor(questionIds[i]);
+            if (slots[slot] == 0) {
+                slots[slot] = i + 1;
+            } // else a duplicate id; the first one wins, as in a linear search
+        }
+    }
+
+    /**
+     * {@code acceptedAnswers} maps short-answer question ids to their
+     * accepted answers; a short-answer question without any is never
+     * graded correct.
+     */
+    public static AnswerKey compile(List<QuizQuestion> questions, Map<Integer, List<String>> acceptedAnswers) {
+        int n = questions.size();
+        int[] questionIds = new int[n];
+        byte[] types = new byte[n];
+        int[] correctIndexes = new int[n];
+        ShortAnswerMatcher[] matchers = new ShortAnswerMatcher[n];
+        for (int i = 0; i < n; i++) {
+            QuizQuestion question = questions.get(i);
+            questionIds[i] = question.getId();
+            types[i] = "mcq".equals(question.getType()) ? MCQ : "short".equals(question.getType()) ? SHORT : OTHER;
+            correctIndexes[i] = question.getCorrectIndex() != null ? question.getCorrectIndex() : NO_CHOICE;
+            List<String> accepted = acceptedAnswers.get(question.getId());
+            if (types[i] == SHORT && accepted != null) {
+                matchers[i] = ShortAnswerMatcher.compile(accepted);
+            }
+        }
+        return new AnswerKey(questionIds, types, correctIndexes, matchers);
+    }
+
+    public int size() {
+        return questionIds.length;
+    }
+
+    public int questionId(int position) {
+        return questionIds[position];
+    }
+
+    /**
+     * Position of the question, or -1 if it is not in this set.
+     */
+    public int indexOf(int questionId) {
+        int slot = slotFor(questionId);
+        return slots[slot] - 1;
+    }
+
+    public boolean isMultipleChoice(int position) {
+        return types[position] == MCQ;
+    }
+
+    public boolean isCorrect(int position, AnswerSubmission answer) {
+        if (types[position] == MCQ) {
+            Integer choice = answer.getChoiceIndex();
+            return choice != null && correctIndexes[position] != NO_CHOICE && choice == correctIndexes[position];
+        }
+        if (types[position] == SHORT) {
+            String text = answer.getText();
+            return text != null && matchers[position] != null && matchers[position].matches(text);
+        }
+        return false;
+    }
+
+    // Linear probing; stops at the slot holding questionId or at a free one
+    private int slotFor(int questionId) {
+        int mask = slots.length - 1;
+        int hash = questionId * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slots[slot] != 0 && questionIds[slots[slot] - 1] != questionId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
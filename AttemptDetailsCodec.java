@@ -0,0 +1,198 @@
+package com.mavpal.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact encoding of quiz_attempts.details, the per-question results of an
+ * attempt ({@code questionId}, {@code correct} and, if answered,
+ * {@code userAnswer}).
+ *
+ * Layout: a version byte, the question count as a varint, question ids as
+ * zigzag varint deltas from the previous id, an answered bitset, a correct
+ * bitset, then one answer per answered question. A choice index from 0 to
+ * {@link #MAX_BYTE_INDEX} is a single byte; anything else is a tag byte
+ * followed by a varint, UTF-8 text or JSON. A typical attempt takes a few
+ * bytes per question instead of about fifty as JSON.
+ *
+ * {@link #decode} also accepts the JSON arrays written before this
+ * encoding, so rows read the same before and after they are migrated.
+ */
+public final class AttemptDetailsCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int MAX_BYTE_INDEX = 0xFC;
+    private static final int TAG_INT = 0xFD;
+    private static final int TAG_TEXT = 0xFE;
+    private static final int TAG_JSON = 0xFF;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private AttemptDetailsCodec() {}
+
+    public static byte[] encode(List<Map<String, Object>> results) {
+        int n = results.size();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + n * 3);
+        out.write(VERSION);
+        writeVarint(out, n);
+
+        byte[] answered = new byte[(n + 7) / 8];
+        byte[] correct = new byte[(n + 7) / 8];
+        int previousId = 0;
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> result = results.get(i);
+            int questionId = ((Number) result.get("questionId")).intValue();
+            writeVarint(out, zigzag(questionId - previousId));
+            previousId = questionId;
+            if (result.containsKey("userAnswer")) {
+                answered[i >> 3] |= (byte) (1 << (i & 7));
+            }
+            if (Boolean.TRUE.equals(result.get("correct"))) {
+                correct[i >> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        out.writeBytes(answered);
+        out.writeBytes(correct);
+
+        for (Map<String, Object> result : results) {
+            if (!result.containsKey("userAnswer")) {
+                continue;
+            }
+            Object answer = result.get("userAnswer");
+            if (answer instanceof Integer && (Integer) answer >= 0 && (Integer) answer <= MAX_BYTE_INDEX) {
+                out.write((Integer) answer);
+            } else if (answer instanceof Integer) {
+                out.write(TAG_INT);
+                writeVarint(out, zigzag((Integer) answer));
+            } else if (answer instanceof String) {
+                out.write(TAG_TEXT);
+                writeBytes(out, ((String) answer).getBytes(StandardCharsets.UTF_8));
+            } else {
+                out.write(TAG_JSON);
+                try {
+                    writeBytes(out, objectMapper.writeValueAsBytes(answer));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The results list {@code details} was encoded from. Null or empty
+     * details decode to an empty list.
+     */
+    public static List<Map<String, Object>> decode(byte[] details) {
+        if (details == null || details.length == 0) {
+            return new ArrayList<>();
+        }
+        if (details[0] != VERSION) {
+            return decodeJson(details);
+        }
+
+        int[] pos = {1};
+        int n = readVarint(details, pos);
+        int[] questionIds = new int[n];
+        int previousId = 0;
+        for (int i = 0; i < n; i++) {
+            previousId += unzigzag(readVarint(details, pos));
+            questionIds[i] = previousId;
+        }
+        int bitsetLength = (n + 7) / 8;
+        int answeredAt = pos[0];
+        int correctAt = answeredAt + bitsetLength;
+        pos[0] = correctAt + bitsetLength;
+
+        List<Map<String, Object>> results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("questionId", questionIds[i]);
+            result.put("correct", (details[correctAt + (i >> 3)] & (1 << (i & 7))) != 0);
+            if ((details[answeredAt + (i >> 3)] & (1 << (i & 7))) != 0) {
+                result.put("userAnswer", readAnswer(details, pos));
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Whether {@code details} is still in the JSON form written before this
+     * encoding.
+     */
+    public static boolean isLegacy(byte[] details) {
+        return details != null && details.length > 0 && details[0] != VERSION;
+    }
+
+    private static Object readAnswer(byte[] details, int[] pos) {
+        int tag = details[pos[0]++] & 0xFF;
+        if (tag <= MAX_BYTE_INDEX) {
+            return tag;
+        }
+        if (tag == TAG_INT) {
+            return unzigzag(readVarint(details, pos));
+        }
+        int length = readVarint(details, pos);
+        int start = pos[0];
+        pos[0] += length;
+        if (tag == TAG_TEXT) {
+            return new String(details, start, length, StandardCharsets.UTF_8);
+        }
+        try {
+            return objectMapper.readValue(details, start, length, Object.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Map<String, Object>> decodeJson(byte[] details) {
+        try {
+            return objectMapper.readValue(details, new TypeReference<List<Map<String, Object>>>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] bytes, int[] pos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -45,6 +45,9 @@ public class AuthController {
     @Autowired
     private com.mavpal.repository.SetRepository setRepository;
 
+    @Autowired
+    private com.mavpal.service.LeaderboardService leaderboardService;
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
         // Validate email domain
@@ -89,6 +92,7 @@ public class AuthController {
         user.setCreatedAt(LocalDateTime.now().toString());
 
         user = userRepository.save(user);
+        leaderboardService.onUserCreated(user);
 
         // Create default daily tasks (only 4 tasks for daily bonus)
         String[] defaultTasks = {
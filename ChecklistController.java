@@ -1,6 +1,7 @@
 package com.mavpal.controller;
 
 import com.mavpal.service.ChecklistService;
+import com.mavpal.service.XpAwardLanes;
 import com.mavpal.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -8,6 +9,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/users/{utaId}/checklist")
@@ -17,6 +19,9 @@ public class ChecklistController {
     @Autowired
     private ChecklistService checklistService;
 
+    @Autowired
+    private XpAwardLanes xpAwardLanes;
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -46,20 +51,21 @@ public class ChecklistController {
     }
 
     @PostMapping("/{taskId}/complete")
-    public ResponseEntity<?> completeTask(@PathVariable String utaId,
-                                          @PathVariable Integer taskId,
-                                          @RequestParam(required = false) String date,
-                                          @RequestHeader("Authorization") String authHeader) {
+    public CompletableFuture<ResponseEntity<?>> completeTask(@PathVariable String utaId,
+                                                             @PathVariable Integer taskId,
+                                                             @RequestParam(required = false) String date,
+                                                             @RequestHeader("Authorization") String authHeader) {
         Integer userId = getUserIdFromToken(authHeader);
         
         // Verify user matches
         var user = userRepository.findByUtaId(utaId).orElse(null);
         if (user == null || !user.getId().equals(userId)) {
-            return ResponseEntity.status(403).body(Map.of("error", "Not authorized"));
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).body(Map.of("error", "Not authorized")));
         }
 
         String checkDate = date != null ? date : LocalDate.now().toString();
-        var result = checklistService.completeTask(userId, taskId, checkDate);
-        return ResponseEntity.ok(result);
+        // Runs on the user's XP lane, since completing the last task awards the daily bonus
+        return xpAwardLanes.submit(userId, () -> checklistService.completeTask(userId, taskId, checkDate))
+                .thenApply(ResponseEntity::ok);
     }
 }
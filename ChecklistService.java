@@ -57,6 +57,10 @@ public class ChecklistService {
         return checklist;
     }
 
+    /**
+     * Mark the task done for {@code date}, and award the daily bonus once
+     * every task is. Awards XP, so callers run it on the user's XP lane.
+     */
     @Transactional
     public Map<String, Object> completeTask(Integer userId, Integer taskId, String date) {
         DailyTask task = dailyTaskRepository.findById(taskId)
@@ -114,7 +118,8 @@ public class ChecklistService {
                                  e.getCreatedAt().startsWith(date));
             
             if (!bonusAwarded) {
-                int bonusXp = xpService.awardXp(userId, xpService.getXpForDailyBonus(), "daily_bonus", null);
+                int bonusXp = xpService.award(userId, xpService.getXpForDailyBonus(), "daily_bonus", null)
+                        .getXpEarned();
                 response.put("bonusXpAwarded", bonusXp);
             } else {
                 response.put("bonusXpAwarded", 0); // Already awarded
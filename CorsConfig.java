@@ -23,6 +23,7 @@ public class CorsConfig {
             "X-Requested-With",
             "Accept",
             "Origin",
+            "Idempotency-Key",
             "Access-Control-Request-Method",
             "Access-Control-Request-Headers"
         ));
@@ -0,0 +1,169 @@
+package com.mavpal.service;
+
+import com.mavpal.entity.XpEvent;
+import com.mavpal.repository.XpEventRepository;
+import com.mavpal.util.TransactionHooks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-user counters for today's set-related XP events, used for the daily
+ * full-XP cap: how many distinct sets the user has earned XP from per event
+ * type, and how many events each set has produced.
+ *
+ * Users are spread over {@link #STRIPES} independently locked segments. A
+ * user's counters are rebuilt from xp_events the first time they are
+ * touched each day, so the cap check
+ * itself never reads the database. When the date changes every counter is
+ * dropped and rebuilt lazily.
+ */
+@Service
+public class DailyCapCounters {
+
+    private static final int STRIPES = 32;
+
+    @Autowired
+    private XpEventRepository xpEventRepository;
+
+    /**
+     * Small sorted int-to-count map; a user touches a handful of sets a day.
+     */
+    private static final class IntCounts {
+        private int[] keys = new int[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        void increment(int key) {
+            int i = Arrays.binarySearch(keys, 0, size, key);
+            if (i >= 0) {
+                counts[i]++;
+                return;
+            }
+            i = -i - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(counts, i, counts, i + 1, size - i);
+            keys[i] = key;
+            counts[i] = 1;
+            size++;
+        }
+
+        int get(int key) {
+            int i = Arrays.binarySearch(keys, 0, size, key);
+            return i >= 0 ? counts[i] : 0;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private static final class UserDay {
+        final Map<String, IntCounts> setsByEventType = new HashMap<>();
+        final IntCounts eventsBySet = new IntCounts();
+        // Highest event id the rebuild read; those events are already counted
+        int loadedUpToEventId;
+
+        void add(String eventType, int setId) {
+            setsByEventType.computeIfAbsent(eventType, t -> new IntCounts()).increment(setId);
+            eventsBySet.increment(setId);
+        }
+    }
+
+    private static final class Segment {
+        final Map<Integer, UserDay> users = new HashMap<>();
+        LocalDate day;
+    }
+
+    private final Segment[] segments = new Segment[STRIPES];
+
+    public DailyCapCounters() {
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Distinct sets the user has earned {@code eventType} XP from today.
+     */
+    public int distinctSetsToday(Integer userId, String eventType) {
+        Segment segment = segmentFor(userId);
+        synchronized (segment) {
+            IntCounts sets = userDay(segment, userId, LocalDate.now()).setsByEventType.get(eventType);
+            return sets != null ? sets.size() : 0;
+        }
+    }
+
+    /**
+     * Events of any type the user has produced from the set today.
+     */
+    public int eventsForSetToday(Integer userId, Integer setId) {
+        Segment segment = segmentFor(userId);
+        synchronized (segment) {
+            return userDay(segment, userId, LocalDate.now()).eventsBySet.get(setId);
+        }
+    }
+
+    /**
+     * Count {@code event} once the current transaction commits, unless a
+     * rebuild already read it from xp_events. Ids follow commit order (see
+     * XpEventWriter), so any event a rebuild missed has a higher id than it
+     * read.
+     */
+    public void record(XpEvent event) {
+        if (event.getSourceSet() == null) {
+            return;
+        }
+        TransactionHooks.afterCommit(() -> {
+            LocalDate day = LocalDate.parse(event.getCreatedAt());
+            Segment segment = segmentFor(event.getUserId());
+            synchronized (segment) {
+                if (!day.equals(segment.day) && !day.equals(LocalDate.now())) {
+                    return; // Awarded before midnight, counted after it
+                }
+                UserDay userDay = userDay(segment, event.getUserId(), day);
+                if (event.getId() == null || event.getId() > userDay.loadedUpToEventId) {
+                    userDay.add(event.getEventType(), event.getSourceSet());
+                }
+            }
+        });
+    }
+
+    private Segment segmentFor(Integer userId) {
+        return segments[Math.floorMod(userId.hashCode(), STRIPES)];
+    }
+
+    /**
+     * Caller holds the segment lock.
+     */
+    private UserDay userDay(Segment segment, Integer userId, LocalDate today) {
+        if (!today.equals(segment.day)) {
+            segment.users.clear();
+            segment.day = today;
+        }
+        UserDay userDay = segment.users.get(userId);
+        if (userDay == null) {
+            userDay = load(userId, today);
+            segment.users.put(userId, userDay);
+        }
+        return userDay;
+    }
+
+    private UserDay load(Integer userId, LocalDate today) {
+        String day = today.toString();
+        UserDay userDay = new UserDay();
+        for (Object[] row : xpEventRepository.findSetEventsForDay(userId, day)) {
+            userDay.add((String) row[1], ((Number) row[2]).intValue());
+            userDay.loadedUpToEventId = Math.max(userDay.loadedUpToEventId, ((Number) row[0]).intValue());
+        }
+        return userDay;
+    }
+}
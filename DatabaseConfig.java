@@ -1,5 +1,8 @@
 package com.mavpal.config;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,12 +10,17 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.jdbc.datasource.init.DataSourceInitializer;
 import org.springframework.jdbc.datasource.init.DatabasePopulator;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
 import javax.sql.DataSource;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 @Configuration
@@ -21,6 +29,59 @@ public class DatabaseConfig {
     @Value("${spring.datasource.url}")
     private String datasourceUrl;
 
+    /**
+     * Transactions start DEFERRED, so read-only ones (every repository find)
+     * take no lock and never wait on writers or each other. A read-write
+     * transaction that read first would fail with SQLITE_BUSY on its first
+     * write if another writer committed meanwhile, instead of waiting, so
+     * those take the write lock as they begin, as BEGIN IMMEDIATE would.
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new WriteLockingTransactionManager(entityManagerFactory);
+    }
+
+    private static class WriteLockingTransactionManager extends JpaTransactionManager {
+
+        private static final long serialVersionUID = 1L;
+
+        WriteLockingTransactionManager(EntityManagerFactory entityManagerFactory) {
+            super(entityManagerFactory);
+        }
+
+        @Override
+        public void afterPropertiesSet() {
+            // Replaces the entity manager factory's dialect, which this picks up here
+            super.afterPropertiesSet();
+            setJpaDialect(new WriteLockingJpaDialect());
+        }
+    }
+
+    private static class WriteLockingJpaDialect extends HibernateJpaDialect {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+                throws SQLException {
+            Object transactionData = super.beginTransaction(entityManager, definition);
+            if (!definition.isReadOnly()) {
+                try {
+                    // Writes nothing, but takes the write lock, waiting up to the busy timeout
+                    entityManager.unwrap(Session.class).doWork(connection -> {
+                        try (Statement stmt = connection.createStatement()) {
+                            stmt.executeUpdate("UPDATE users SET xp = xp WHERE 0");
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    entityManager.getTransaction().rollback();
+                    throw e;
+                }
+            }
+            return transactionData;
+        }
+    }
+
     @Bean
     public DataSourceInitializer dataSourceInitializer(DataSource dataSource) {
         DataSourceInitializer initializer = new DataSourceInitializer();
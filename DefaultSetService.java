@@ -25,6 +25,9 @@ public class DefaultSetService {
     @Autowired
     private QuizQuestionRepository quizQuestionRepository;
 
+    @Autowired
+    private QuizService quizService;
+
     @Transactional
     public void createDefaultSets(Integer userId) {
         // Check if default sets already exist to prevent duplicates
@@ -105,33 +108,33 @@ public class DefaultSetService {
             q1.setSetId(quizSet.getId());
             q1.setType("mcq");
             q1.setQuestionText("What is the time complexity of quicksort in the average case?");
-            q1.setChoices("[\"O(n)\", \"O(n log n)\", \"O(n²)\", \"O(log n)\"]");
             q1.setCorrectIndex(1);
             q1.setHint("Quicksort uses divide and conquer strategy");
             q1.setOrder(0);
-            quizQuestionRepository.save(q1);
+            q1 = quizQuestionRepository.save(q1);
+            quizService.setChoices(q1.getId(), List.of("O(n)", "O(n log n)", "O(n²)", "O(log n)"));
 
             // Question 2: What does HTTP stand for?
             QuizQuestion q2 = new QuizQuestion();
             q2.setSetId(quizSet.getId());
             q2.setType("mcq");
             q2.setQuestionText("What does HTTP stand for?");
-            q2.setChoices("[\"HyperText Transfer Protocol\", \"High Transfer Text Protocol\", \"HyperText Transmission Protocol\", \"High Transfer Transmission Protocol\"]");
             q2.setCorrectIndex(0);
             q2.setHint("It's the protocol used for web communication");
             q2.setOrder(1);
-            quizQuestionRepository.save(q2);
+            q2 = quizQuestionRepository.save(q2);
+            quizService.setChoices(q2.getId(), List.of("HyperText Transfer Protocol", "High Transfer Text Protocol", "HyperText Transmission Protocol", "High Transfer Transmission Protocol"));
 
             // Question 3: What is the main purpose of a database index?
             QuizQuestion q3 = new QuizQuestion();
             q3.setSetId(quizSet.getId());
             q3.setType("mcq");
             q3.setQuestionText("What is the main purpose of a database index?");
-            q3.setChoices("[\"To store data\", \"To speed up data retrieval\", \"To encrypt data\", \"To backup data\"]");
             q3.setCorrectIndex(1);
             q3.setHint("Indexes help find data faster");
             q3.setOrder(2);
-            quizQuestionRepository.save(q3);
+            q3 = quizQuestionRepository.save(q3);
+            quizService.setChoices(q3.getId(), List.of("To store data", "To speed up data retrieval", "To encrypt data", "To backup data"));
         }
     }
 }
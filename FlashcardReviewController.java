@@ -7,6 +7,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/sets/{setId}/review")
 @CrossOrigin(origins = "http://localhost:3000")
@@ -16,7 +18,7 @@ public class FlashcardReviewController {
     private XPService xpService;
 
     @PostMapping
-    public ResponseEntity<?> completeReview(
+    public CompletableFuture<ResponseEntity<?>> completeReview(
             @PathVariable Long setId,
             @RequestParam(defaultValue = "10") int cardsReviewed,
             HttpServletRequest request) {
@@ -24,18 +26,19 @@ public class FlashcardReviewController {
         Long userId = (Long) request.getAttribute("userId");
         
         if (userId == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
         }
 
         // Award XP for flashcard review (base 5 XP per card, max 50 XP per session)
         int baseXP = Math.min(cardsReviewed * 5, 50);
-        int xpEarned = xpService.awardXp(userId.intValue(), baseXP, "flashcard_review", setId.intValue());
-
-        ReviewResponse response = new ReviewResponse();
-        response.setXpEarned(xpEarned);
-        response.setCardsReviewed(cardsReviewed);
-
-        return ResponseEntity.ok(response);
+        // The request thread is released while the award waits on its lane
+        return xpService.awardXp(userId.intValue(), baseXP, "flashcard_review", setId.intValue())
+                .thenApply(award -> {
+                    ReviewResponse response = new ReviewResponse();
+                    response.setXpEarned(award.getXpEarned());
+                    response.setCardsReviewed(cardsReviewed);
+                    return ResponseEntity.ok(response);
+                });
     }
 
     private static class ReviewResponse {
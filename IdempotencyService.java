@@ -0,0 +1,247 @@
+package com.mavpal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs XP-awarding requests at most once per Idempotency-Key, so a client
+ * retrying after a dropped response gets the original response back instead
+ * of a second award.
+ *
+ * A key is claimed in idempotency_keys, in the same transaction as the work
+ * it guards, and the response body is stored with it. Duplicates are
+ * therefore caught even across restarts, and since every read-write
+ * transaction takes the write lock up front, two concurrent requests with
+ * one key serialize and the second sees the first one's response. Recent
+ * responses are also kept in memory, within {@code cache-max-bytes}, so
+ * retries usually never reach the database. Keys expire after
+ * {@code ttl-hours}.
+ *
+ * A hash of the request is stored alongside each key, and a key reused
+ * with a different request is rejected with {@link KeyReusedException}
+ * rather than answered with the first request's response.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    // Rough per-entry cost besides the key and body: map node, entry object,
+    // array and string headers
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    // SHA-256 in hex
+    private static final int FINGERPRINT_CHARS = 64;
+
+    @Value("${mavpal.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${mavpal.idempotency.cache-max-bytes:8388608}")
+    private long cacheMaxBytes;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Thrown when a key comes back with a request other than the one it was
+     * first used for.
+     */
+    public static class KeyReusedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public KeyReusedException() {
+            super("Idempotency-Key was already used with a different request");
+        }
+    }
+
+    private static final class CachedResponse {
+        final byte[] body;
+        final String fingerprint;
+        final long expiresAt;
+        final int size;
+
+        CachedResponse(String key, byte[] body, String fingerprint, long expiresAt) {
+            this.body = body;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+            this.size = body.length + (key.length() + FINGERPRINT_CHARS) * 2 + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
+    // Insertion order is expiry order, so both eviction rules trim the head
+    private final LinkedHashMap<String, CachedResponse> cache = new LinkedHashMap<>();
+    private long cachedBytes;
+    private long hits;
+    private long replays;
+    private long evictions;
+    private long conflicts;
+    private long nextPurgeAt;
+
+    /**
+     * The JSON response for {@code action}, run at most once per user, scope
+     * and key within the TTL. With a null key the action simply runs. The
+     * action runs inside the transaction that claims the key, so it should
+     * join it (plain @Transactional) rather than start its own.
+     * {@code request} is the request body the key was sent with; it is only
+     * compared with the one the key was first used with.
+     *
+     * @throws KeyReusedException if the key was used with a different request
+     */
+    public byte[] execute(Integer userId, String scope, String key, Object request,
+                          Supplier<Map<String, Object>> action) {
+        if (key == null) {
+            return serialize(action.get());
+        }
+
+        String fingerprint = fingerprint(request);
+        String cacheKey = userId + "|" + scope + "|" + key;
+        byte[] cached = getCached(cacheKey, fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+
+        long now = System.currentTimeMillis();
+        String cutoff = LocalDateTime.now().minusHours(ttlHours).toString();
+        byte[] body = new TransactionTemplate(transactionManager).execute(status -> {
+            purgeExpired(now, cutoff);
+            // Claims a new key, or takes over one that has expired
+            int claimed = jdbcTemplate.update("INSERT INTO idempotency_keys "
+                            + "(user_id, scope, idem_key, request_hash, created_at) VALUES (?, ?, ?, ?, ?) "
+                            + "ON CONFLICT (user_id, scope, idem_key) DO UPDATE SET response = NULL, "
+                            + "request_hash = excluded.request_hash, created_at = excluded.created_at "
+                            + "WHERE created_at < ?",
+                    userId, scope, key, fingerprint, LocalDateTime.now().toString(), cutoff);
+            if (claimed == 0) {
+                Map<String, Object> stored = jdbcTemplate.queryForMap("SELECT response, request_hash "
+                        + "FROM idempotency_keys WHERE user_id = ? AND scope = ? AND idem_key = ?",
+                        userId, scope, key);
+                synchronized (this) {
+                    if (!fingerprint.equals(stored.get("request_hash"))) {
+                        conflicts++;
+                        throw new KeyReusedException();
+                    }
+                    replays++;
+                }
+                return (byte[]) stored.get("response");
+            }
+            byte[] response = serialize(action.get());
+            jdbcTemplate.update("UPDATE idempotency_keys SET response = ? WHERE user_id = ? AND scope = ? AND idem_key = ?",
+                    response, userId, scope, key);
+            return response;
+        });
+
+        putCached(cacheKey, body, fingerprint, now + TimeUnit.HOURS.toMillis(ttlHours));
+        return body;
+    }
+
+    /**
+     * Size and effectiveness of the in-memory cache. {@code bytes} is the
+     * accounted footprint the {@code maxBytes} budget is enforced against.
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", cache.size());
+        stats.put("bytes", cachedBytes);
+        stats.put("maxBytes", cacheMaxBytes);
+        stats.put("hits", hits);
+        stats.put("replays", replays);
+        stats.put("evictions", evictions);
+        stats.put("conflicts", conflicts);
+        return stats;
+    }
+
+    private synchronized byte[] getCached(String cacheKey, String fingerprint) {
+        CachedResponse entry = cache.get(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            cache.remove(cacheKey);
+            cachedBytes -= entry.size;
+            return null;
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            conflicts++;
+            throw new KeyReusedException();
+        }
+        hits++;
+        return entry.body;
+    }
+
+    private synchronized void putCached(String cacheKey, byte[] body, String fingerprint, long expiresAt) {
+        CachedResponse entry = new CachedResponse(cacheKey, body, fingerprint, expiresAt);
+        CachedResponse previous = cache.remove(cacheKey);
+        if (previous != null) {
+            cachedBytes -= previous.size;
+        }
+        cache.put(cacheKey, entry);
+        cachedBytes += entry.size;
+
+        long now = System.currentTimeMillis();
+        Iterator<CachedResponse> it = cache.values().iterator();
+        while (it.hasNext()) {
+            CachedResponse oldest = it.next();
+            if (cachedBytes <= cacheMaxBytes && oldest.expiresAt > now) {
+                break;
+            }
+            it.remove();
+            cachedBytes -= oldest.size;
+            evictions++;
+        }
+    }
+
+    // At most once an hour, as part of a transaction that is writing anyway
+    private void purgeExpired(long now, String cutoff) {
+        synchronized (this) {
+            if (now < nextPurgeAt) {
+                return;
+            }
+            nextPurgeAt = now + TimeUnit.HOURS.toMillis(1);
+        }
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE created_at < ?", cutoff);
+    }
+
+    // Map keys are sorted, so the same JSON object hashes the same whatever its key order
+    private String fingerprint(Object request) {
+        try {
+            byte[] json = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to hash request", e);
+        }
+    }
+
+    private byte[] serialize(Map<String, Object> response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize response", e);
+        }
+    }
+}
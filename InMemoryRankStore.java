@@ -0,0 +1,117 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.LeaderboardEntry;
+import com.mavpal.dto.ScoredMember;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * RankStore kept in this JVM: one LeaderboardIndex per board. The default,
+ * and the right choice for a single application instance.
+ */
+@Component
+@ConditionalOnProperty(name = "mavpal.leaderboard.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRankStore implements RankStore {
+
+    private final Map<String, LeaderboardIndex> boards = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public void replaceBoard(String board, Map<Integer, Integer> scores) {
+        List<LeaderboardEntry> entries = new ArrayList<>(scores.size());
+        scores.forEach((memberId, score) -> entries.add(member(memberId, score)));
+        index(board).reset(entries);
+    }
+
+    @Override
+    public void deleteBoard(String board) {
+        boards.remove(board);
+    }
+
+    @Override
+    public void setScore(String board, Integer memberId, int score) {
+        LeaderboardIndex index = index(board);
+        // Same lock as incrementScore, so a set never lands inside an increment
+        synchronized (index) {
+            index.put(member(memberId, score));
+        }
+    }
+
+    @Override
+    public int incrementScore(String board, Integer memberId, int delta) {
+        LeaderboardIndex index = index(board);
+        // The index makes each put atomic; the read-modify-write needs its own lock
+        synchronized (index) {
+            LeaderboardEntry existing = index.get(memberId);
+            int score = (existing != null ? existing.getXp() : 0) + delta;
+            index.put(member(memberId, score));
+            return score;
+        }
+    }
+
+    @Override
+    public Integer getScore(String board, Integer memberId) {
+        LeaderboardEntry entry = index(board).get(memberId);
+        return entry != null ? entry.getXp() : null;
+    }
+
+    @Override
+    public Integer rank(String board, Integer memberId) {
+        return index(board).positionOf(memberId);
+    }
+
+    @Override
+    public long countAbove(String board, int score) {
+        return index(board).countAbove(score);
+    }
+
+    @Override
+    public List<ScoredMember> rangeByRank(String board, int fromRank, int limit) {
+        return toMembers(index(board).range(fromRank, limit));
+    }
+
+    @Override
+    public List<ScoredMember> rangeAfter(String board, int score, Integer memberId, int limit) {
+        return toMembers(index(board).after(score, memberId, limit));
+    }
+
+    @Override
+    public List<ScoredMember> rangeAround(String board, Integer memberId, int radius) {
+        LeaderboardIndex index = index(board);
+        Integer position = index.positionOf(memberId);
+        if (position == null) {
+            return new ArrayList<>();
+        }
+        int start = Math.max(1, position - radius);
+        return toMembers(index.range(start, position - start + radius + 1));
+    }
+
+    @Override
+    public long topVersion(String board) {
+        return index(board).topVersion();
+    }
+
+    private LeaderboardIndex index(String board) {
+        return boards.computeIfAbsent(board, name -> new LeaderboardIndex());
+    }
+
+    private static LeaderboardEntry member(Integer memberId, int score) {
+        return new LeaderboardEntry(memberId, null, null, null, score, null);
+    }
+
+    private static List<ScoredMember> toMembers(List<LeaderboardEntry> entries) {
+        return entries.stream()
+                .map(e -> new ScoredMember(e.getId(), e.getXp()))
+                .collect(Collectors.toList());
+    }
+}
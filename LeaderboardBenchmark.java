@@ -0,0 +1,175 @@
+package com.mavpal.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mavpal.MavPalApplication;
+import com.mavpal.dto.LeaderboardSnapshot;
+import com.mavpal.service.LeaderboardService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leaderboard read paths against a seeded SQLite file.
+ *
+ * Run with {@code ./gradlew jmh}; results land in build/reports/jmh and can be
+ * compared with the committed jmh-baseline.json. Seeded databases are kept in
+ * build/jmh and reused between runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class LeaderboardBenchmark {
+
+    private static final int TOP = 50;
+    private static final int SEED = 42;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private LeaderboardService leaderboardService;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        File database = new File("build/jmh/leaderboard-" + users + ".db");
+        seed(database);
+
+        SpringApplication app = new SpringApplication(MavPalApplication.class);
+        context = app.run(
+                "--spring.datasource.url=jdbc:sqlite:" + database.getPath(),
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+        leaderboardService = context.getBean(LeaderboardService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> getTopUsers() {
+        return leaderboardService.getTopUsers(TOP, randomUserId());
+    }
+
+    @Benchmark
+    public Long getUserRank() {
+        return leaderboardService.getUserRank(randomUserId());
+    }
+
+    /**
+     * Top rows read and serialized on every call, as before snapshots.
+     */
+    @Benchmark
+    public byte[] serializeTopUsers() throws Exception {
+        return objectMapper.writeValueAsBytes(leaderboardService.getTopUsers(TOP, randomUserId()));
+    }
+
+    /**
+     * What GET /api/leaderboard does: cached top rows plus the caller's rank.
+     */
+    @Benchmark
+    public byte[] snapshotResponse() {
+        Integer userId = randomUserId();
+        LeaderboardSnapshot snapshot = leaderboardService.getSnapshot(TOP, null);
+        return snapshot.toJson(leaderboardService.getRank(userId, null));
+    }
+
+    private Integer randomUserId() {
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+
+    /**
+     * Create the schema and insert {@code users} rows with a fixed XP
+     * distribution, unless the file already holds them.
+     */
+    private void seed(File database) throws Exception {
+        database.getParentFile().mkdirs();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database.getPath())) {
+            try (Statement stmt = connection.createStatement()) {
+                for (String statement : readSchema().split(";")) {
+                    String trimmed = statement.trim();
+                    if (!trimmed.isEmpty() && !trimmed.startsWith("--")) {
+                        stmt.execute(trimmed);
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+                    if (rs.next() && rs.getInt(1) == users) {
+                        return;
+                    }
+                }
+                stmt.execute("DELETE FROM users");
+            }
+
+            connection.setAutoCommit(false);
+            Random random = new Random(SEED);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO users (id, uta_id, email, first_name, last_name, password_hash, xp, level) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int id = 1; id <= users; id++) {
+                    // Most students have little XP, a few have a lot
+                    int xp = (int) (Math.pow(random.nextDouble(), 3) * 50_000);
+                    insert.setInt(1, id);
+                    insert.setString(2, String.format("1%09d", id));
+                    insert.setString(3, "bench" + id + "@mavs.uta.edu");
+                    insert.setString(4, "First" + id);
+                    insert.setString(5, "Last" + id);
+                    insert.setString(6, "x");
+                    insert.setInt(7, xp);
+                    insert.setInt(8, 1 + xp / 1000);
+                    insert.addBatch();
+                    if (id % INSERT_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    private static String readSchema() throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                LeaderboardBenchmark.class.getResourceAsStream("/schema.sql"), StandardCharsets.UTF_8))) {
+            StringBuilder sql = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sql.append(line).append("\n");
+            }
+            return sql.toString();
+        }
+    }
+}
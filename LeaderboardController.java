@@ -1,10 +1,19 @@
 package com.mavpal.controller;
 
+import com.mavpal.dto.LeaderboardSnapshot;
 import com.mavpal.service.LeaderboardService;
+import com.mavpal.service.LeaderboardStreamService;
+import com.mavpal.service.SetLeaderboardService;
+import com.mavpal.service.LeaderboardWindow;
 import com.mavpal.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Map;
 
@@ -16,12 +25,27 @@ public class LeaderboardController {
     @Autowired
     private LeaderboardService leaderboardService;
 
+    @Autowired
+    private LeaderboardStreamService leaderboardStreamService;
+
+    @Autowired
+    private SetLeaderboardService setLeaderboardService;
+
     @Autowired
     private JwtUtil jwtUtil;
 
     @GetMapping
     public ResponseEntity<?> getLeaderboard(@RequestParam(defaultValue = "50") int top,
-                                             @RequestHeader(value = "Authorization", required = false) String authHeader) {
+                                             @RequestParam(required = false) String window,
+                                             @RequestHeader(value = "Authorization", required = false) String authHeader,
+                                             WebRequest request) {
+        LeaderboardWindow leaderboardWindow;
+        try {
+            leaderboardWindow = LeaderboardWindow.fromParam(window);
+        } catch (IllegalArgumentException e) {
+            return invalidWindow();
+        }
+
         Integer currentUserId = null;
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             try {
@@ -32,7 +56,78 @@ public class LeaderboardController {
             }
         }
 
-        var result = leaderboardService.getTopUsers(top, currentUserId);
+        LeaderboardSnapshot snapshot = leaderboardService.getSnapshot(top, leaderboardWindow);
+        Long rank = currentUserId != null ? leaderboardService.getRank(currentUserId, leaderboardWindow) : null;
+
+        // Unchanged since the client's last poll: 304 with no body
+        String etag = snapshot.etag(rank);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.toJson(rank));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<?> getLeaderboardPage(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "50") int limit,
+                                                 @RequestParam(required = false) String window) {
+        LeaderboardWindow leaderboardWindow;
+        try {
+            leaderboardWindow = LeaderboardWindow.fromParam(window);
+        } catch (IllegalArgumentException e) {
+            return invalidWindow();
+        }
+
+        try {
+            return ResponseEntity.ok(leaderboardService.getPage(cursor, limit, leaderboardWindow));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid cursor"));
+        }
+    }
+
+    @GetMapping("/around/{userId}")
+    public ResponseEntity<?> getAroundUser(@PathVariable Integer userId,
+                                            @RequestParam(defaultValue = "5") int radius,
+                                            @RequestParam(required = false) String window) {
+        LeaderboardWindow leaderboardWindow;
+        try {
+            leaderboardWindow = LeaderboardWindow.fromParam(window);
+        } catch (IllegalArgumentException e) {
+            return invalidWindow();
+        }
+
+        var result = leaderboardService.getAroundUser(userId, radius, leaderboardWindow);
+        if (result == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "User not on leaderboard"));
+        }
         return ResponseEntity.ok(result);
     }
+
+    @GetMapping("/subjects/{subject}")
+    public ResponseEntity<?> getSubjectLeaderboard(@PathVariable String subject,
+                                                    @RequestParam(defaultValue = "50") int top) {
+        return ResponseEntity.ok(Map.of("subject", subject,
+                "topUsers", setLeaderboardService.getSubjectLeaderboard(subject, top)));
+    }
+
+    /**
+     * Server-Sent Events stream of "leaderboard" events, each carrying the users
+     * whose XP or rank changed during the last tick.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLeaderboard() {
+        return leaderboardStreamService.subscribe();
+    }
+
+    private ResponseEntity<?> invalidWindow() {
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", "window must be one of: day, week, month, all"));
+    }
 }
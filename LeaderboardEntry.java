@@ -0,0 +1,83 @@
+package com.mavpal.dto;
+
+import com.mavpal.entity.User;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable leaderboard row. Holds only the public fields shown on the board
+ * (no email or password hash) so the in-memory index stays small.
+ */
+public class LeaderboardEntry {
+    private final Integer id;
+    private final String utaId;
+    private final String firstName;
+    private final String lastName;
+    private final int xp;
+    private final int level;
+
+    public LeaderboardEntry(Integer id, String utaId, String firstName, String lastName, Integer xp, Integer level) {
+        this.id = id;
+        this.utaId = utaId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.xp = xp != null ? xp : 0;
+        this.level = level != null ? level : 1;
+    }
+
+    public static LeaderboardEntry from(User user) {
+        return new LeaderboardEntry(user.getId(), user.getUtaId(), user.getFirstName(),
+                user.getLastName(), user.getXp(), user.getLevel());
+    }
+
+    /**
+     * Same user with a different score, e.g. XP earned within a time window.
+     */
+    public LeaderboardEntry withXp(int xp) {
+        return new LeaderboardEntry(id, utaId, firstName, lastName, xp, level);
+    }
+
+    /**
+     * Same user after an XP award.
+     */
+    public LeaderboardEntry withProgress(int xp, int level) {
+        return new LeaderboardEntry(id, utaId, firstName, lastName, xp, level);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", id);
+        map.put("utaId", utaId);
+        map.put("firstName", firstName);
+        map.put("lastName", lastName);
+        map.put("xp", xp);
+        map.put("level", level);
+        return map;
+    }
+
+    // Getters
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUtaId() {
+        return utaId;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public int getXp() {
+        return xp;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,335 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.LeaderboardEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory leaderboard ordered by (xp DESC, id ASC).
+ *
+ * Backed by an indexable skip list: every forward link also stores how many
+ * rows it skips, so position lookups are O(log n) and reading the first N rows
+ * is a plain walk along the bottom level. Reads take a shared lock, writes an
+ * exclusive one.
+ *
+ * The index also carries a top version: a number that changes whenever a
+ * write touches the first {@link #TRACKED_TOP} rows, and stays put otherwise.
+ * Versions come from one global sequence, so two indexes never share one.
+ */
+public class LeaderboardIndex {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    /** Writes at or above this position bump the top version. */
+    public static final int TRACKED_TOP = LeaderboardService.MAX_PAGE_SIZE;
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private static final class Node {
+        final LeaderboardEntry entry;
+        final Node[] next;
+        final int[] span;
+
+        Node(LeaderboardEntry entry, int levels) {
+            this.entry = entry;
+            this.next = new Node[levels];
+            this.span = new int[levels];
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Node> nodesById = new HashMap<>();
+    private Node head = new Node(null, MAX_LEVEL);
+    private int levels = 1;
+    private int size = 0;
+    private volatile long topVersion = VERSIONS.incrementAndGet();
+
+    /**
+     * Replace the whole index, e.g. when seeding from the database.
+     */
+    public void reset(Collection<LeaderboardEntry> entries) {
+        lock.writeLock().lock();
+        try {
+            nodesById.clear();
+            head = new Node(null, MAX_LEVEL);
+            levels = 1;
+            size = 0;
+            for (LeaderboardEntry entry : entries) {
+                insertNode(entry);
+            }
+            topVersion = VERSIONS.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Insert or replace the row for {@code entry.getId()}.
+     *
+     * @return the previous row for that user, or null if there was none
+     */
+    public LeaderboardEntry put(LeaderboardEntry entry) {
+        lock.writeLock().lock();
+        try {
+            Node existing = nodesById.get(entry.getId());
+            int oldPosition = existing != null ? deleteNode(existing.entry) : Integer.MAX_VALUE;
+            int newPosition = insertNode(entry);
+            if (Math.min(oldPosition, newPosition) <= TRACKED_TOP) {
+                topVersion = VERSIONS.incrementAndGet();
+            }
+            return existing != null ? existing.entry : null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public LeaderboardEntry remove(Integer userId) {
+        lock.writeLock().lock();
+        try {
+            Node existing = nodesById.get(userId);
+            if (existing == null) {
+                return null;
+            }
+            if (deleteNode(existing.entry) <= TRACKED_TOP) {
+                topVersion = VERSIONS.incrementAndGet();
+            }
+            return existing.entry;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public LeaderboardEntry get(Integer userId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesById.get(userId);
+            return node != null ? node.entry : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Changes only when a write lands in the first {@link #TRACKED_TOP} rows.
+     */
+    public long topVersion() {
+        return topVersion;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * First {@code limit} rows in leaderboard order. O(limit).
+     */
+    public List<LeaderboardEntry> top(int limit) {
+        lock.readLock().lock();
+        try {
+            return collect(head.next[0], limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code limit} rows that sort strictly after the key (xp, id).
+     * Used for keyset pagination: O(log n) to seek, then O(limit).
+     */
+    public List<LeaderboardEntry> after(int xp, int id, int limit) {
+        LeaderboardEntry key = new LeaderboardEntry(id, null, null, null, xp, null);
+        lock.readLock().lock();
+        try {
+            Node x = head;
+            for (int i = levels - 1; i >= 0; i--) {
+                while (x.next[i] != null && compare(x.next[i].entry, key) <= 0) {
+                    x = x.next[i];
+                }
+            }
+            return collect(x.next[0], limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code limit} rows starting at the 1-based {@code position}.
+     */
+    public List<LeaderboardEntry> range(int position, int limit) {
+        lock.readLock().lock();
+        try {
+            int traversed = 0;
+            Node x = head;
+            for (int i = levels - 1; i >= 0; i--) {
+                while (x.next[i] != null && traversed + x.span[i] < position) {
+                    traversed += x.span[i];
+                    x = x.next[i];
+                }
+            }
+            return collect(x.next[0], limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of rows with strictly more than {@code xp}. O(log n).
+     */
+    public int countAbove(int xp) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            Node x = head;
+            for (int i = levels - 1; i >= 0; i--) {
+                while (x.next[i] != null && x.next[i].entry.getXp() > xp) {
+                    count += x.span[i];
+                    x = x.next[i];
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 1-based position of the user in leaderboard order, or null if absent.
+     */
+    public Integer positionOf(Integer userId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesById.get(userId);
+            if (node == null) {
+                return null;
+            }
+            int position = 0;
+            Node x = head;
+            for (int i = levels - 1; i >= 0; i--) {
+                while (x.next[i] != null && compare(x.next[i].entry, node.entry) <= 0) {
+                    position += x.span[i];
+                    x = x.next[i];
+                }
+            }
+            return position;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<LeaderboardEntry> collect(Node from, int limit) {
+        List<LeaderboardEntry> result = new ArrayList<>(Math.max(0, Math.min(limit, size)));
+        Node x = from;
+        while (x != null && result.size() < limit) {
+            result.add(x.entry);
+            x = x.next[0];
+        }
+        return result;
+    }
+
+    private static int compare(LeaderboardEntry a, LeaderboardEntry b) {
+        int byXp = Integer.compare(b.getXp(), a.getXp());
+        return byXp != 0 ? byXp : Integer.compare(a.getId(), b.getId());
+    }
+
+    private int randomLevel() {
+        int level = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (level < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @return the 1-based position the entry was inserted at
+     */
+    private int insertNode(LeaderboardEntry entry) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = levels - 1; i >= 0; i--) {
+            rank[i] = i == levels - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && compare(x.next[i].entry, entry) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int level = randomLevel();
+        if (level > levels) {
+            for (int i = levels; i < level; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                update[i].span[i] = size;
+            }
+            levels = level;
+        }
+
+        Node node = new Node(entry, level);
+        for (int i = 0; i < level; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = level; i < levels; i++) {
+            update[i].span[i]++;
+        }
+
+        nodesById.put(entry.getId(), node);
+        size++;
+        return rank[0] + 1;
+    }
+
+    /**
+     * @return the 1-based position the entry was removed from, or
+     *         Integer.MAX_VALUE if it was not present
+     */
+    private int deleteNode(LeaderboardEntry entry) {
+        Node[] update = new Node[MAX_LEVEL];
+        int traversed = 0;
+        Node x = head;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i].entry, entry) < 0) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        Node target = x.next[0];
+        if (target == null || compare(target.entry, entry) != 0) {
+            return Integer.MAX_VALUE;
+        }
+
+        for (int i = 0; i < levels; i++) {
+            if (update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (levels > 1 && head.next[levels - 1] == null) {
+            levels--;
+        }
+
+        nodesById.remove(entry.getId());
+        size--;
+        return traversed + 1;
+    }
+}
@@ -1,42 +1,248 @@
 package com.mavpal.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mavpal.dto.LeaderboardEntry;
+import com.mavpal.dto.LeaderboardSnapshot;
+import com.mavpal.dto.ScoredMember;
 import com.mavpal.entity.User;
 import com.mavpal.repository.UserRepository;
+import com.mavpal.repository.XpEventRepository;
+import com.mavpal.util.TransactionHooks;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Lifetime and day / week / month leaderboards. Scores live in a RankStore
+ * (one board per leaderboard, windows keyed by their start date); display
+ * fields come from a local cache of public user columns.
+ */
 @Service
 public class LeaderboardService {
 
+    private static final int RANK_CHECK_SAMPLE_SIZE = 20;
+
+    // Hard cap on rows returned by any leaderboard read, whatever the client asks for
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_AROUND_RADIUS = 25;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private XpEventRepository xpEventRepository;
+
+    @Autowired
+    private RankService rankService;
+
+    @Autowired
+    private RankStore rankStore;
+
+    @Autowired
+    private LevelCurve levelCurve;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final String LIFETIME_BOARD = "all";
+
+    // Public columns per user; the xp field is only as fresh as this instance's last write,
+    // and with a shared store the rest may lag other instances' writes too
+    private final Map<Integer, LeaderboardEntry> profiles = new ConcurrentHashMap<>();
+
+    // Board currently backing each window, e.g. "week:2024-03-04"
+    private final Map<LeaderboardWindow, String> windowBoards = new ConcurrentHashMap<>();
+
+    // Latest snapshot per board and top size, e.g. "all:50" or "WEEK:10"
+    private final Map<String, LeaderboardSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    // Users whose lifetime score changed since the last drainChanges()
+    private final Set<Integer> changedUserIds = ConcurrentHashMap.newKeySet();
+
+    // Striped by user id; see apply()
+    private final Object[] applyLocks = Stream.generate(Object::new).limit(64).toArray();
+
+    /**
+     * Load every user into the rank store once the schema is in place.
+     * Only the public leaderboard columns are selected.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedIndex() {
+        List<LeaderboardEntry> entries = userRepository.findAllLeaderboardEntries();
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (LeaderboardEntry entry : entries) {
+            profiles.put(entry.getId(), entry);
+            scores.put(entry.getId(), entry.getXp());
+        }
+        rankStore.replaceBoard(LIFETIME_BOARD, scores);
+        rankService.reset(entries);
+        rankService.checkConsistency(RANK_CHECK_SAMPLE_SIZE);
+
+        // Aggregate xp_events once per window; after this the boards are kept
+        // current by onXpAwarded
+        LocalDate today = LocalDate.now();
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            Map<Integer, Integer> windowScores = new HashMap<>();
+            for (Object[] row : xpEventRepository.sumXpByUserSince(window.bucketStart(today).toString())) {
+                windowScores.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+            }
+            rankStore.replaceBoard(currentBoard(window), windowScores);
+        }
+    }
+
+    /**
+     * Put a user who was just registered on the lifetime board, with the XP
+     * they were created with. When called inside a transaction this happens
+     * after commit, so a rolled back registration never shows up.
+     */
+    public void onUserCreated(User user) {
+        LeaderboardEntry entry = LeaderboardEntry.from(user);
+        TransactionHooks.afterCommit(() -> apply(entry, entry.getXp()));
+    }
+
+    /**
+     * Refresh the cached display fields (names) after the user's profile was
+     * saved. The score and level are left alone: {@code user} may have been
+     * loaded before an award that committed meanwhile, and only awards move
+     * them.
+     */
+    public void onUserUpdated(User user) {
+        LeaderboardEntry entry = LeaderboardEntry.from(user);
+        TransactionHooks.afterCommit(() -> {
+            synchronized (applyLock(entry.getId())) {
+                profiles.computeIfPresent(entry.getId(),
+                        (id, cached) -> entry.withProgress(cached.getXp(), cached.getLevel()));
+            }
+            // Cached snapshots carry the old names
+            snapshots.clear();
+            changedUserIds.add(entry.getId());
+        });
+    }
+
+    /**
+     * Credit an award of {@code amount} to the lifetime board and the current
+     * day / week / month boards once it commits. Only the display fields of
+     * {@code entry} are used; the lifetime score moves by {@code amount}.
+     */
+    public void onXpAwarded(LeaderboardEntry entry, int amount) {
+        LocalDate awardedOn = LocalDate.now();
+        TransactionHooks.afterCommit(() -> {
+            apply(entry, amount);
+            if (amount == 0) {
+                return;
+            }
+            for (LeaderboardWindow window : LeaderboardWindow.values()) {
+                String board = currentBoard(window);
+                if (board.equals(boardName(window, awardedOn))) {
+                    rankStore.incrementScore(board, entry.getId(), amount);
+                } // else the award's bucket has already rolled over
+            }
+        });
+    }
+
+    /**
+     * Move the user's lifetime score by {@code delta} once their XP was
+     * corrected rather than awarded. The day / week / month boards are left
+     * alone.
+     */
+    public void onXpCorrected(LeaderboardEntry entry, int delta) {
+        TransactionHooks.afterCommit(() -> apply(entry, delta));
+    }
+
+    // Nothing orders the after-commit hooks of concurrent awards, so the lifetime
+    // score moves by each award's delta instead of being set to the total its
+    // transaction saw, and ends the same whichever hook runs last. The lock keeps
+    // the profile and rank tree in step with the score the store returned last.
+    private void apply(LeaderboardEntry entry, int delta) {
+        synchronized (applyLock(entry.getId())) {
+            int xp = rankStore.incrementScore(LIFETIME_BOARD, entry.getId(), delta);
+            profiles.put(entry.getId(), entry.withProgress(xp, levelCurve.levelFor(xp)));
+            rankService.update(entry.getId(), xp);
+        }
+        changedUserIds.add(entry.getId());
+    }
+
+    private Object applyLock(Integer userId) {
+        return applyLocks[Math.floorMod(userId, applyLocks.length)];
+    }
+
+    /**
+     * Recompute the level of every cached profile from its XP after the
+     * level curve changed. Cached snapshots are dropped so they are rebuilt
+     * with the new levels.
+     */
+    public void refreshLevels() {
+        profiles.replaceAll((id, entry) -> entry.withProgress(entry.getXp(), levelCurve.levelFor(entry.getXp())));
+        snapshots.clear();
+    }
+
+    /**
+     * Public columns for the user, or null if there is no such user.
+     */
+    public LeaderboardEntry getEntry(Integer userId) {
+        LeaderboardEntry entry = profiles.get(userId);
+        if (entry == null) {
+            loadProfiles(List.of(userId), false);
+            entry = profiles.get(userId);
+        }
+        return entry;
+    }
+
+    /**
+     * Users who moved since the previous call, with their current XP and
+     * rank. Several awards to one user in between collapse into one row.
+     */
+    public List<Map<String, Object>> drainChanges() {
+        List<Map<String, Object>> changes = new ArrayList<>();
+        Iterator<Integer> it = changedUserIds.iterator();
+        while (it.hasNext()) {
+            Integer userId = it.next();
+            it.remove();
+            LeaderboardEntry entry = profiles.get(userId);
+            if (entry == null) {
+                continue;
+            }
+            Map<String, Object> change = entry.toMap();
+            change.put("rank", getUserRank(userId));
+            changes.add(change);
+        }
+        return changes;
+    }
+
     public Map<String, Object> getTopUsers(int top, Integer currentUserId) {
-        // Get top users by XP
-        List<User> allUsers = userRepository.findAll(Sort.by(Sort.Direction.DESC, "xp"));
-        List<User> topUsers = allUsers.stream().limit(top).collect(java.util.stream.Collectors.toList());
-
-        List<Map<String, Object>> users = topUsers.stream().map(user -> {
-            Map<String, Object> map = new HashMap<>();
-            map.put("id", user.getId());
-            map.put("utaId", user.getUtaId());
-            map.put("firstName", user.getFirstName());
-            map.put("lastName", user.getLastName());
-            map.put("xp", user.getXp());
-            map.put("level", user.getLevel());
-            return map;
-        }).collect(Collectors.toList());
+        return getTopUsers(top, currentUserId, null);
+    }
+
+    /**
+     * Top users for the lifetime board ({@code window} null) or for the
+     * current day / week / month. Every board is read the same way - O(top).
+     */
+    public Map<String, Object> getTopUsers(int top, Integer currentUserId, LeaderboardWindow window) {
+        String board = boardFor(window);
+
+        List<Map<String, Object>> users = read(rankStore.rangeByRank(board, 1, clamp(top, MAX_PAGE_SIZE))).stream()
+                .map(LeaderboardEntry::toMap)
+                .collect(Collectors.toList());
 
         // Get current user's rank
         Long rank = null;
         if (currentUserId != null) {
-            rank = userRepository.getUserRank(currentUserId);
+            rank = window != null ? getWindowRank(board, currentUserId) : getUserRank(currentUserId);
         }
 
         Map<String, Object> response = new HashMap<>();
@@ -48,7 +254,194 @@ public class LeaderboardService {
         return response;
     }
 
+    /**
+     * Pre-serialized top-N for the board. The cached snapshot is reused until
+     * the board's top version changes, so repeated polls skip both the store
+     * read and JSON serialization.
+     */
+    public LeaderboardSnapshot getSnapshot(int top, LeaderboardWindow window) {
+        String board = boardFor(window);
+        int size = clamp(top, MAX_PAGE_SIZE);
+        String key = (window != null ? window.name() : "all") + ":" + size;
+
+        // Read the version before the rows so the snapshot is never older than its tag
+        long version = rankStore.topVersion(board);
+        LeaderboardSnapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.getVersion() == version) {
+            return snapshot;
+        }
+
+        List<Map<String, Object>> users = read(rankStore.rangeByRank(board, 1, size)).stream()
+                .map(LeaderboardEntry::toMap)
+                .collect(Collectors.toList());
+        try {
+            snapshot = new LeaderboardSnapshot(version, size, objectMapper.writeValueAsBytes(users));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize leaderboard", e);
+        }
+        snapshots.put(key, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Rank on the given board, or null if the user has no place on it.
+     */
+    public Long getRank(Integer userId, LeaderboardWindow window) {
+        return window != null ? getWindowRank(boardFor(window), userId) : getUserRank(userId);
+    }
+
+    /**
+     * One page of the board, keyed on (xp, id). {@code cursor} is the
+     * "xp:id" of the last row on the previous page, or null for the first page.
+     * The response carries the cursor for the next page, or null at the end.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Map<String, Object> getPage(String cursor, int limit, LeaderboardWindow window) {
+        String board = boardFor(window);
+        int pageSize = clamp(limit, MAX_PAGE_SIZE);
+
+        List<LeaderboardEntry> page;
+        if (cursor == null || cursor.isBlank()) {
+            page = read(rankStore.rangeByRank(board, 1, pageSize));
+        } else {
+            String[] parts = cursor.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            page = read(rankStore.rangeAfter(board, Integer.parseInt(parts[0]),
+                    Integer.parseInt(parts[1]), pageSize));
+        }
+
+        String nextCursor = null;
+        if (page.size() == pageSize && pageSize > 0) {
+            LeaderboardEntry last = page.get(page.size() - 1);
+            nextCursor = last.getXp() + ":" + last.getId();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("users", withPositions(board, page));
+        response.put("nextCursor", nextCursor);
+        return response;
+    }
+
+    /**
+     * The user plus up to {@code radius} users directly above and below them,
+     * or null if the user is not on the board.
+     */
+    public Map<String, Object> getAroundUser(Integer userId, int radius, LeaderboardWindow window) {
+        String board = boardFor(window);
+        List<LeaderboardEntry> rows = read(rankStore.rangeAround(board, userId, clamp(radius, MAX_AROUND_RADIUS)));
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("users", withPositions(board, rows));
+        response.put("userRank", window != null ? getWindowRank(board, userId) : getUserRank(userId));
+        return response;
+    }
+
     public Long getUserRank(Integer userId) {
-        return userRepository.getUserRank(userId);
+        Long rank;
+        if (rankStore.isShared()) {
+            // Other instances write the board too, so the local rank tree may lag
+            rank = getWindowRank(LIFETIME_BOARD, userId);
+        } else {
+            rank = rankService.rankOf(userId);
+        }
+        if (rank == null) {
+            // Not tracked yet (e.g. inserted by one of the Node scripts) - ask the database
+            rank = userRepository.getUserRank(userId);
+        }
+        return rank;
+    }
+
+    private String boardFor(LeaderboardWindow window) {
+        return window != null ? currentBoard(window) : LIFETIME_BOARD;
+    }
+
+    private static String boardName(LeaderboardWindow window, LocalDate date) {
+        return window.name().toLowerCase() + ":" + window.bucketStart(date);
+    }
+
+    /**
+     * Board for the window's current bucket. The first caller to see a new
+     * bucket deletes the previous one, so nothing is ever re-aggregated from
+     * xp_events.
+     */
+    private String currentBoard(LeaderboardWindow window) {
+        String board = boardName(window, LocalDate.now());
+        String previous = windowBoards.put(window, board);
+        if (previous != null && !previous.equals(board)) {
+            rankStore.deleteBoard(previous);
+        }
+        return board;
+    }
+
+    /**
+     * Attach display fields to store rows, loading any profiles this instance
+     * has not seen in one query. With a shared store every row's profile is
+     * loaded: other instances award XP and edit profiles without this one's
+     * cache hearing about it.
+     */
+    private List<LeaderboardEntry> read(List<ScoredMember> members) {
+        boolean shared = rankStore.isShared();
+        Set<Integer> missing = new LinkedHashSet<>();
+        for (ScoredMember member : members) {
+            if (shared || !profiles.containsKey(member.getMemberId())) {
+                missing.add(member.getMemberId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            loadProfiles(missing, shared);
+        }
+
+        List<LeaderboardEntry> rows = new ArrayList<>(members.size());
+        for (ScoredMember member : members) {
+            LeaderboardEntry profile = profiles.get(member.getMemberId());
+            rows.add(profile != null
+                    ? profile.withXp(member.getScore())
+                    : new LeaderboardEntry(member.getMemberId(), null, null, null, member.getScore(), null));
+        }
+        return rows;
+    }
+
+    private void loadProfiles(Collection<Integer> userIds, boolean replace) {
+        for (LeaderboardEntry entry : userRepository.findLeaderboardEntriesByIds(userIds)) {
+            if (replace) {
+                profiles.put(entry.getId(), entry);
+            } else {
+                profiles.putIfAbsent(entry.getId(), entry);
+            }
+        }
+    }
+
+    private static int clamp(int requested, int max) {
+        return Math.max(0, Math.min(requested, max));
+    }
+
+    private List<Map<String, Object>> withPositions(String board, List<LeaderboardEntry> rows) {
+        List<Map<String, Object>> users = new ArrayList<>(rows.size());
+        if (rows.isEmpty()) {
+            return users;
+        }
+        Integer first = rankStore.rank(board, rows.get(0).getId());
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> map = rows.get(i).toMap();
+            if (first != null) {
+                map.put("position", first + i);
+            }
+            users.add(map);
+        }
+        return users;
+    }
+
+    private Long getWindowRank(String board, Integer userId) {
+        Integer score = rankStore.getScore(board, userId);
+        if (score == null) {
+            return null; // No XP earned in this window yet
+        }
+        return rankStore.countAbove(board, score) + 1;
     }
 }
@@ -0,0 +1,53 @@
+package com.mavpal.dto;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable, pre-serialized top-N of one leaderboard at one version. The
+ * topUsers JSON is rendered once and reused by every request until the
+ * board's top version moves on.
+ */
+public class LeaderboardSnapshot {
+    private final long version;
+    private final int top;
+    private final byte[] topUsersJson;
+
+    public LeaderboardSnapshot(long version, int top, byte[] topUsersJson) {
+        this.version = version;
+        this.top = top;
+        this.topUsersJson = topUsersJson;
+    }
+
+    /**
+     * Entity tag for this snapshot as seen by a user with {@code userRank}
+     * (null when anonymous), so a rank change alone also invalidates it.
+     */
+    public String etag(Long userRank) {
+        return "\"" + version + "-" + top + (userRank != null ? "-" + userRank : "") + "\"";
+    }
+
+    /**
+     * Response body: {"topUsers":[...],"userRank":n}. Only the small wrapper
+     * is written per request.
+     */
+    public byte[] toJson(Long userRank) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(topUsersJson.length + 32);
+        out.writeBytes("{\"topUsers\":".getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(topUsersJson);
+        if (userRank != null) {
+            out.writeBytes((",\"userRank\":" + userRank).getBytes(StandardCharsets.UTF_8));
+        }
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    // Getters
+    public long getVersion() {
+        return version;
+    }
+
+    public int getTop() {
+        return top;
+    }
+}
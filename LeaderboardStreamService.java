@@ -0,0 +1,198 @@
+package com.mavpal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes leaderboard changes to Server-Sent Events subscribers.
+ *
+ * Award writers only mark users as changed (see LeaderboardService). A
+ * ticker collects those marks every TICK_MS, serializes one frame and hands
+ * it to each subscriber's small queue. Sender threads drain the queues; a
+ * subscriber whose queue is full is too slow and gets disconnected.
+ *
+ * The servlet write behind each send blocks, so it runs on a writer thread
+ * while the sender waits at most SEND_BUDGET_MS for it. A client that
+ * stalls a write longer is disconnected, and never holds a sender thread
+ * that healthy subscribers are waiting for.
+ */
+@Service
+public class LeaderboardStreamService {
+
+    private static final long TICK_MS = 1000;
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final int MAX_PENDING_FRAMES = 8;
+    private static final int SENDER_THREADS = 4;
+    private static final long SEND_BUDGET_MS = 5000;
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardStreamService.class);
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> frames =
+                new ArrayBlockingQueue<>(MAX_PENDING_FRAMES);
+        final AtomicBoolean sending = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService ticker;
+    private ExecutorService senders;
+    private ExecutorService writers;
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(daemon("leaderboard-stream-tick"));
+        senders = Executors.newFixedThreadPool(SENDER_THREADS, daemon("leaderboard-stream-send"));
+        // One thread per write in progress; only stalled clients keep one for long
+        writers = Executors.newCachedThreadPool(daemon("leaderboard-stream-write"));
+        ticker.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+        senders.shutdownNow();
+        writers.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+        subscribers.clear();
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void tick() {
+        try {
+            List<Map<String, Object>> changes = leaderboardService.drainChanges();
+            if (changes.isEmpty() || subscribers.isEmpty()) {
+                return;
+            }
+
+            // Serialize once, share the same frame with every subscriber
+            Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event()
+                    .name("leaderboard")
+                    .data(objectMapper.writeValueAsString(Map.of("changes", changes)), MediaType.APPLICATION_JSON)
+                    .build();
+
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.frames.offer(frame)) {
+                    drop(subscriber);
+                    continue;
+                }
+                if (subscriber.sending.compareAndSet(false, true)) {
+                    senders.execute(() -> drain(subscriber));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize leaderboard changes: {}", e.getMessage());
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled tick
+            log.warn("Leaderboard stream tick failed", e);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Set<ResponseBodyEmitter.DataWithMediaType> frame;
+            while ((frame = subscriber.frames.poll()) != null) {
+                send(subscriber, frame);
+            }
+        } catch (IOException | IllegalStateException | TimeoutException e) {
+            drop(subscriber);
+        } finally {
+            subscriber.sending.set(false);
+        }
+        // A frame may have been queued after the last poll but before the flag cleared
+        if (!subscriber.frames.isEmpty() && subscribers.contains(subscriber)
+                && subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    /**
+     * Write {@code frame} to the subscriber, giving up after SEND_BUDGET_MS.
+     * A write that timed out is interrupted and left to the writer thread.
+     */
+    private void send(Subscriber subscriber, Set<ResponseBodyEmitter.DataWithMediaType> frame)
+            throws IOException, TimeoutException {
+        Future<?> write = writers.submit(() -> {
+            subscriber.emitter.send(frame);
+            return null;
+        });
+        try {
+            write.get(SEND_BUDGET_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            write.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriber.frames.clear();
+            subscriber.emitter.complete();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
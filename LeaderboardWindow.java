@@ -0,0 +1,36 @@
+package com.mavpal.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Time windows a leaderboard can be ranked over. Each window maps a date to
+ * the first day of the bucket it falls in.
+ */
+public enum LeaderboardWindow {
+    DAY,
+    WEEK,
+    MONTH;
+
+    public LocalDate bucketStart(LocalDate date) {
+        switch (this) {
+            case WEEK:
+                return date.with(DayOfWeek.MONDAY);
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+
+    /**
+     * Parse the {@code window} request parameter. Null or "all" means the
+     * lifetime board and returns null.
+     */
+    public static LeaderboardWindow fromParam(String value) {
+        if (value == null || value.isBlank() || "all".equalsIgnoreCase(value)) {
+            return null;
+        }
+        return LeaderboardWindow.valueOf(value.trim().toUpperCase());
+    }
+}
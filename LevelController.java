@@ -0,0 +1,36 @@
+package com.mavpal.controller;
+
+import com.mavpal.service.LevelCurve;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/levels")
+@CrossOrigin(origins = "http://localhost:3000")
+public class LevelController {
+
+    @Autowired
+    private LevelCurve levelCurve;
+
+    /**
+     * The active level thresholds. The table only changes on restart, so
+     * clients may cache it and revalidate with the ETag.
+     */
+    @GetMapping
+    public ResponseEntity<?> getLevelCurve(WebRequest request) {
+        String etag = "\"" + levelCurve.getVersion() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS))
+                .body(levelCurve.toMap());
+    }
+}
@@ -0,0 +1,85 @@
+package com.mavpal.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * XP thresholds for each level, from {@code mavpal.levels.thresholds}.
+ * Entry i is the XP needed to reach level i + 1, so the first entry is
+ * always 0. The default is the 20-level table in levelCalculator.js; the
+ * client can fetch the active table from /api/levels instead of hardcoding it.
+ */
+@Component
+public class LevelCurve {
+
+    private final int[] thresholds;
+    private final String version;
+
+    public LevelCurve(@Value("${mavpal.levels.thresholds:0,100,250,450,700,1000,1350,1750,2200,2700,"
+            + "3250,3850,4500,5200,5950,6750,7600,8500,9450,10000}") int[] thresholds) {
+        if (thresholds.length == 0 || thresholds[0] != 0) {
+            throw new IllegalStateException("mavpal.levels.thresholds must start at 0");
+        }
+        for (int i = 1; i < thresholds.length; i++) {
+            if (thresholds[i] <= thresholds[i - 1]) {
+                throw new IllegalStateException("mavpal.levels.thresholds must be strictly increasing");
+            }
+        }
+        this.thresholds = thresholds.clone();
+        this.version = Integer.toHexString(Arrays.hashCode(thresholds));
+    }
+
+    public int levelFor(int xp) {
+        int i = Arrays.binarySearch(thresholds, xp);
+        // Not found: i is -(first threshold above xp) - 1
+        return i >= 0 ? i + 1 : Math.max(1, -i - 1);
+    }
+
+    public int getMaxLevel() {
+        return thresholds.length;
+    }
+
+    /**
+     * Identifies the table; changes whenever any threshold does.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Level, the XP bounds of that level, and percent of the way to the next
+     * one (rounded as in levelCalculator.js). At the max level nextLevelXp is
+     * null and progress is 100.
+     */
+    public Map<String, Object> progress(int xp) {
+        int level = levelFor(xp);
+        int levelXp = thresholds[level - 1];
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("level", level);
+        progress.put("levelXp", levelXp);
+        if (level == thresholds.length) {
+            progress.put("nextLevelXp", null);
+            progress.put("xpToNextLevel", 0);
+            progress.put("progressPercent", 100);
+        } else {
+            int nextLevelXp = thresholds[level];
+            progress.put("nextLevelXp", nextLevelXp);
+            progress.put("xpToNextLevel", nextLevelXp - xp);
+            progress.put("progressPercent", (int) Math.round((double) (xp - levelXp) / (nextLevelXp - levelXp) * 100));
+        }
+        return progress;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("version", version);
+        map.put("maxLevel", thresholds.length);
+        map.put("thresholds", thresholds.clone());
+        return map;
+    }
+}
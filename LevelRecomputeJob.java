@@ -0,0 +1,95 @@
+package com.mavpal.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings users.level in line with the LevelCurve after the curve changes.
+ *
+ * The version of the curve the stored levels were computed with is kept in
+ * level_curve. When it differs from the active curve at startup, every user
+ * is recomputed in the background, {@link #BATCH_SIZE} users per
+ * transaction in id order, and the version is recorded only once the whole
+ * table is done, so an interrupted run starts over on the next start.
+ */
+@Service
+public class LevelRecomputeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(LevelRecomputeJob.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private LevelCurve levelCurve;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recomputeIfCurveChanged() {
+        List<String> stored = jdbcTemplate.queryForList("SELECT version FROM level_curve WHERE id = 1", String.class);
+        if (!stored.isEmpty() && stored.get(0).equals(levelCurve.getVersion())) {
+            return;
+        }
+        Thread worker = new Thread(this::recomputeAll, "level-recompute");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Recompute every user's level from their XP. Returns how many levels
+     * changed.
+     */
+    public int recomputeAll() {
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+        int changed = 0;
+        int afterId = 0;
+        while (true) {
+            List<int[]> users = jdbcTemplate.query("SELECT id, xp, level FROM users WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3)}, afterId, BATCH_SIZE);
+            if (users.isEmpty()) {
+                break;
+            }
+            afterId = users.get(users.size() - 1)[0];
+
+            List<Object[]> updates = new ArrayList<>();
+            for (int[] user : users) {
+                int level = levelCurve.levelFor(user[1]);
+                if (level != user[2]) {
+                    // Matching on xp skips users awarded since the read; the
+                    // award already set their level from the current curve
+                    updates.add(new Object[]{level, user[0], user[1]});
+                }
+            }
+            if (!updates.isEmpty()) {
+                transactions.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate("UPDATE users SET level = ? WHERE id = ? AND xp = ?", updates));
+                changed += updates.size();
+            }
+        }
+
+        if (changed > 0) {
+            leaderboardService.refreshLevels();
+        }
+        jdbcTemplate.update("INSERT INTO level_curve (id, version) VALUES (1, ?) "
+                + "ON CONFLICT (id) DO UPDATE SET version = excluded.version", levelCurve.getVersion());
+        log.info("Recomputed levels for curve {}: {} changed", levelCurve.getVersion(), changed);
+        return changed;
+    }
+}
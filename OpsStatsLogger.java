@@ -0,0 +1,79 @@
+package com.mavpal.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the award lanes' and the idempotency cache's counters every
+ * {@code log-interval-ms}, so queue depth, blocked submits, batching and
+ * cache footprint can be watched in the application log. Set the interval
+ * to 0 to turn it off.
+ */
+@Service
+public class OpsStatsLogger {
+
+    private static final Logger log = LoggerFactory.getLogger(OpsStatsLogger.class);
+
+    @Value("${mavpal.ops-stats.log-interval-ms:60000}")
+    private long logIntervalMs;
+
+    @Autowired
+    private XpAwardLanes xpAwardLanes;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void start() {
+        if (logIntervalMs <= 0) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ops-stats-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::logStats, logIntervalMs, logIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    public void logStats() {
+        try {
+            for (Map<String, Object> lane : xpAwardLanes.getStats()) {
+                log.info("XP lane {}: queued {}/{} (high {}), {} completed, {} failed, {} transactions "
+                                + "(avg batch {}, largest {}), {} blocked submits for {} ms, avg queue wait {} ms",
+                        lane.get("lane"), lane.get("queued"), lane.get("capacity"), lane.get("highWater"),
+                        lane.get("completed"), lane.get("failed"), lane.get("transactions"),
+                        String.format("%.1f", (Double) lane.get("avgBatch")), lane.get("largestBatch"),
+                        lane.get("blockedSubmits"), lane.get("blockedMs"),
+                        String.format("%.2f", (Double) lane.get("avgQueueWaitMs")));
+            }
+            Map<String, Object> idempotency = idempotencyService.getStats();
+            log.info("Idempotency cache: {} entries, {}/{} bytes, {} hits, {} replays, {} evictions, "
+                            + "{} keys reused with a different request",
+                    idempotency.get("entries"), idempotency.get("bytes"), idempotency.get("maxBytes"),
+                    idempotency.get("hits"), idempotency.get("replays"), idempotency.get("evictions"),
+                    idempotency.get("conflicts"));
+        } catch (RuntimeException e) {
+            log.warn("Failed to log ops stats: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.QuizAttemptRequest.AnswerSubmission;
+import com.mavpal.util.SqliteErrors;
+import com.mavpal.util.TransactionHooks;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-question difficulty counters: how many graded attempts included the
+ * question, how many answered it, how many got it right, and how often each
+ * choice was picked.
+ *
+ * gradeQuiz records each attempt here once it commits. Counts accumulate in
+ * memory, spread over {@link #STRIPES} independently locked segments by
+ * question id, and are added to question_stats and question_choice_stats
+ * every {@code flush-interval-ms} and on shutdown. Reads combine the stored
+ * totals with what is not flushed yet, so they cost one row per question
+ * (and per picked choice) however many attempts there have been.
+ *
+ * Counts for questions deleted before their flush are dropped. A flush
+ * that fails for any other reason is retried with the next one, unless
+ * the database rejects the rows, in which case they are logged and dropped
+ * rather than retried forever.
+ */
+@Service
+public class QuestionStatsService {
+
+    private static final int STRIPES = 32;
+
+    // Choice indexes from 0 up to this are counted; anything else is not a real choice
+    private static final int MAX_CHOICE_INDEX = 63;
+
+    private static final Logger log = LoggerFactory.getLogger(QuestionStatsService.class);
+
+    // Each upsert only inserts while the question still exists
+    private static final String QUESTION_UPSERT_SQL = "INSERT INTO question_stats "
+            + "(question_id, attempts, answered, correct) SELECT ?, ?, ?, ? "
+            + "WHERE EXISTS (SELECT 1 FROM quiz_questions WHERE id = ?) ON CONFLICT (question_id) DO UPDATE SET "
+            + "attempts = attempts + excluded.attempts, answered = answered + excluded.answered, "
+            + "correct = correct + excluded.correct";
+
+    private static final String CHOICE_UPSERT_SQL = "INSERT INTO question_choice_stats "
+            + "(question_id, choice_index, chosen) SELECT ?, ?, ? "
+            + "WHERE EXISTS (SELECT 1 FROM quiz_questions WHERE id = ?) ON CONFLICT (question_id, choice_index) "
+            + "DO UPDATE SET chosen = chosen + excluded.chosen";
+
+    @Value("${mavpal.question-stats.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final class Counts {
+        long attempts;
+        long answered;
+        long correct;
+        long[] chosen = new long[4];
+
+        void choose(int index, long times) {
+            if (index >= chosen.length) {
+                chosen = Arrays.copyOf(chosen, Math.max(index + 1, chosen.length * 2));
+            }
+            chosen[index] += times;
+        }
+
+        void add(Counts other) {
+            attempts += other.attempts;
+            answered += other.answered;
+            correct += other.correct;
+            for (int i = 0; i < other.chosen.length; i++) {
+                if (other.chosen[i] > 0) {
+                    choose(i, other.chosen[i]);
+                }
+            }
+        }
+    }
+
+    private static final class Segment {
+        Map<Integer, Counts> pending = new HashMap<>();
+    }
+
+    private final Segment[] segments = new Segment[STRIPES];
+
+    // Held from taking a segment's counts until they are committed, and by
+    // readers, so a read never sees counts both pending and stored or neither
+    private final Object flushLock = new Object();
+
+    private TransactionTemplate transactions;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public QuestionStatsService() {
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        transactions = new TransactionTemplate(transactionManager);
+        transactions.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        running = true;
+        flusher = new Thread(this::run, "question-stats-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        flush();
+    }
+
+    /**
+     * Count one graded attempt once the current transaction commits.
+     * {@code given[i]} is the answer to the key's question i, or null, and
+     * {@code correct[i]} whether it was right.
+     */
+    public void record(AnswerKey key, AnswerSubmission[] given, boolean[] correct) {
+        TransactionHooks.afterCommit(() -> {
+            for (int i = 0; i < key.size(); i++) {
+                Integer questionId = key.questionId(i);
+                Segment segment = segmentFor(questionId);
+                synchronized (segment) {
+                    Counts counts = segment.pending.computeIfAbsent(questionId, id -> new Counts());
+                    counts.attempts++;
+                    if (given[i] != null) {
+                        counts.answered++;
+                        Integer choice = given[i].getChoiceIndex();
+                        if (key.isMultipleChoice(i) && choice != null && choice >= 0 && choice <= MAX_CHOICE_INDEX) {
+                            counts.choose(choice, 1);
+                        }
+                    }
+                    if (correct[i]) {
+                        counts.correct++;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * One entry per question of the set, in the repository's order, with
+     * attempts, answered, correct, correctRate (null before any attempt)
+     * and choiceCounts indexed by choice.
+     */
+    public List<Map<String, Object>> getSetStats(Integer setId) {
+        Map<Integer, Counts> totals = new LinkedHashMap<>();
+        synchronized (flushLock) {
+            jdbcTemplate.query("SELECT q.id, s.attempts, s.answered, s.correct FROM quiz_questions q "
+                            + "LEFT JOIN question_stats s ON s.question_id = q.id WHERE q.set_id = ?",
+                    rs -> {
+                        Counts counts = new Counts();
+                        counts.attempts = rs.getLong(2);
+                        counts.answered = rs.getLong(3);
+                        counts.correct = rs.getLong(4);
+                        totals.put(rs.getInt(1), counts);
+                    },
+                    setId);
+            jdbcTemplate.query("SELECT c.question_id, c.choice_index, c.chosen FROM quiz_questions q "
+                            + "JOIN question_choice_stats c ON c.question_id = q.id WHERE q.set_id = ?",
+                    rs -> {
+                        totals.get(rs.getInt(1)).choose(rs.getInt(2), rs.getLong(3));
+                    },
+                    setId);
+            for (Map.Entry<Integer, Counts> entry : totals.entrySet()) {
+                Segment segment = segmentFor(entry.getKey());
+                synchronized (segment) {
+                    Counts pending = segment.pending.get(entry.getKey());
+                    if (pending != null) {
+                        entry.getValue().add(pending);
+                    }
+                }
+            }
+        }
+
+        List<Map<String, Object>> stats = new ArrayList<>(totals.size());
+        for (Map.Entry<Integer, Counts> entry : totals.entrySet()) {
+            Counts counts = entry.getValue();
+            int choices = counts.chosen.length;
+            while (choices > 0 && counts.chosen[choices - 1] == 0) {
+                choices--;
+            }
+            Map<String, Object> map = new HashMap<>();
+            map.put("questionId", entry.getKey());
+            map.put("attempts", counts.attempts);
+            map.put("answered", counts.answered);
+            map.put("correct", counts.correct);
+            map.put("correctRate", counts.attempts > 0 ? (double) counts.correct / counts.attempts : null);
+            map.put("choiceCounts", Arrays.copyOf(counts.chosen, choices));
+            stats.add(map);
+        }
+        return stats;
+    }
+
+    /**
+     * Add everything counted so far to the stats tables. Must not be called
+     * inside a transaction.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<Integer, Counts> batch = new HashMap<>();
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    if (!segment.pending.isEmpty()) {
+                        batch.putAll(segment.pending);
+                        segment.pending = new HashMap<>();
+                    }
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> questionRows = new ArrayList<>(batch.size());
+            List<Object[]> choiceRows = new ArrayList<>();
+            for (Map.Entry<Integer, Counts> entry : batch.entrySet()) {
+                Counts counts = entry.getValue();
+                questionRows.add(new Object[]{entry.getKey(), counts.attempts, counts.answered, counts.correct,
+                        entry.getKey()});
+                for (int i = 0; i < counts.chosen.length; i++) {
+                    if (counts.chosen[i] > 0) {
+                        choiceRows.add(new Object[]{entry.getKey(), i, counts.chosen[i], entry.getKey()});
+                    }
+                }
+            }
+            try {
+                transactions.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(QUESTION_UPSERT_SQL, questionRows);
+                    jdbcTemplate.batchUpdate(CHOICE_UPSERT_SQL, choiceRows);
+                });
+            } catch (RuntimeException e) {
+                if (e instanceof DataAccessException && SqliteErrors.isConstraintViolation((DataAccessException) e)) {
+                    // Retrying would fail the same way every time
+                    log.error("Dropped question stats for {} questions the database rejected: {}",
+                            batch.size(), ((DataAccessException) e).getMostSpecificCause().getMessage());
+                    return;
+                }
+                // Put the counts back for the next flush
+                for (Map.Entry<Integer, Counts> entry : batch.entrySet()) {
+                    Segment segment = segmentFor(entry.getKey());
+                    synchronized (segment) {
+                        segment.pending.computeIfAbsent(entry.getKey(), id -> new Counts()).add(entry.getValue());
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            if (!running) {
+                break;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush question stats, retrying: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Segment segmentFor(Integer questionId) {
+        return segments[Math.floorMod(questionId.hashCode(), STRIPES)];
+    }
+}
@@ -29,13 +29,15 @@ public class QuizAttempt {
     @Column(name = "duration_ms")
     private Integer durationMs;
 
-    @Column(columnDefinition = "TEXT")
-    private String details; // JSON summary of answers
+    // Per-question results in AttemptDetailsCodec's encoding; rows written
+    // before it may still hold JSON text until QuizAttemptDetailsMigration runs
+    @Column(columnDefinition = "BLOB")
+    private byte[] details;
 
     // Constructors
     public QuizAttempt() {}
 
-    public QuizAttempt(Integer setId, Integer userId, Double score, Integer xpEarned, String startedAt, String completedAt, Integer durationMs, String details) {
+    public QuizAttempt(Integer setId, Integer userId, Double score, Integer xpEarned, String startedAt, String completedAt, Integer durationMs, byte[] details) {
         this.setId = setId;
         this.userId = userId;
         this.score = score;
@@ -111,11 +113,11 @@ public class QuizAttempt {
         this.durationMs = durationMs;
     }
 
-    public String getDetails() {
+    public byte[] getDetails() {
         return details;
     }
 
-    public void setDetails(String details) {
+    public void setDetails(byte[] details) {
         this.details = details;
     }
 }
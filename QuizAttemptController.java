@@ -1,17 +1,26 @@
 package com.mavpal.controller;
 
-import com.mavpal.entity.User;
-import com.mavpal.repository.UserRepository;
+import com.mavpal.dto.QuizAttemptRequest;
+import com.mavpal.dto.QuizAttemptRequest.AnswerSubmission;
+import com.mavpal.entity.QuizAttempt;
+import com.mavpal.repository.QuizAttemptRepository;
+import com.mavpal.service.AttemptDetailsCodec;
+import com.mavpal.service.IdempotencyService;
+import com.mavpal.service.QuizProgressService;
 import com.mavpal.service.QuizService;
+import com.mavpal.service.XpAwardLanes;
 import com.mavpal.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/sets/{setId}/attempts")
@@ -25,7 +34,16 @@ public class QuizAttemptController {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private UserRepository userRepository;
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private XpAwardLanes xpAwardLanes;
+
+    @Autowired
+    private QuizAttemptRepository quizAttemptRepository;
+
+    @Autowired
+    private QuizProgressService quizProgressService;
 
     private Integer getUserIdFromToken(String authHeader) {
         String token = authHeader.substring(7);
@@ -33,36 +51,95 @@ public class QuizAttemptController {
     }
 
     @PostMapping
-    public ResponseEntity<?> submitAttempt(@PathVariable Integer setId,
-                                            @RequestBody Map<String, Object> request,
-                                            @RequestHeader("Authorization") String authHeader) {
+    public CompletableFuture<ResponseEntity<?>> submitAttempt(@PathVariable Integer setId,
+                                                              @RequestBody QuizAttemptRequest request,
+                                                              @RequestHeader("Authorization") String authHeader,
+                                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Integer userId = getUserIdFromToken(authHeader);
 
-        @SuppressWarnings("unchecked")
-        List<Map<String, Object>> answers = (List<Map<String, Object>>) request.get("answers");
-        Integer durationMs = (Integer) request.get("durationMs");
+        List<AnswerSubmission> answers = request.getAnswers();
+        Integer durationMs = request.getDurationMs();
 
         if (answers == null || durationMs == null) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Missing required fields: answers, durationMs"));
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("error", "Missing required fields: answers, durationMs")));
         }
 
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > IdempotencyService.MAX_KEY_LENGTH)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("error", "Idempotency-Key must be 1 to " + IdempotencyService.MAX_KEY_LENGTH + " characters")));
+        }
+
+        // Grading, its award and the key's claim run as one unit on the user's lane;
+        // the request thread is released meanwhile. Includes the user's new XP total
+        // and level. A retry with the same key gets this response again without a
+        // second attempt or award.
+        return xpAwardLanes.submit(userId, () -> idempotencyService.execute(userId, "quiz_attempt:" + setId,
+                        idempotencyKey, request, () -> quizService.gradeQuiz(setId, userId, answers, durationMs)))
+                .<ResponseEntity<?>>thenApply(result -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(result))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof IdempotencyService.KeyReusedException) {
+                        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                                .body(Map.of("error", cause.getMessage()));
+                    }
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(Map.of("error", String.valueOf(cause.getMessage())));
+                });
+    }
+
+    /**
+     * The caller's attempts on the set, newest first, one page at a time.
+     */
+    @GetMapping
+    public ResponseEntity<?> getAttempts(@PathVariable Integer setId,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit,
+                                         @RequestHeader("Authorization") String authHeader) {
+        Integer userId = getUserIdFromToken(authHeader);
         try {
-            Map<String, Object> result = quizService.gradeQuiz(setId, userId, answers, durationMs);
+            return ResponseEntity.ok(quizProgressService.getAttempts(userId, setId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid cursor"));
+        }
+    }
 
-            // Get updated user info
-            User user = userRepository.findById(userId)
-                    .orElse(null);
+    /**
+     * One of the caller's attempts with its per-question results. Details
+     * are stored encoded and only decoded here.
+     */
+    @GetMapping("/{attemptId}")
+    public ResponseEntity<?> getAttempt(@PathVariable Integer setId,
+                                        @PathVariable Integer attemptId,
+                                        @RequestHeader("Authorization") String authHeader) {
+        Integer userId = getUserIdFromToken(authHeader);
+        QuizAttempt attempt = quizAttemptRepository.findById(attemptId)
+                .orElse(null);
 
-            if (user != null) {
-                result.put("newXpTotal", user.getXp());
-                result.put("level", user.getLevel());
-            }
+        if (attempt == null || !attempt.getSetId().equals(setId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Attempt not found"));
+        }
 
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", e.getMessage()));
+        if (!attempt.getUserId().equals(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not authorized"));
         }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", attempt.getId());
+        response.put("setId", attempt.getSetId());
+        response.put("score", attempt.getScore());
+        response.put("xpEarned", attempt.getXpEarned());
+        response.put("startedAt", attempt.getStartedAt());
+        response.put("completedAt", attempt.getCompletedAt());
+        response.put("durationMs", attempt.getDurationMs());
+        response.put("results", AttemptDetailsCodec.decode(attempt.getDetails()));
+        response.put("detailsBytes", attempt.getDetails() != null ? attempt.getDetails().length : 0);
+
+        return ResponseEntity.ok(response);
     }
 }
@@ -0,0 +1,106 @@
+package com.mavpal.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites quiz_attempts.details still stored as JSON into
+ * AttemptDetailsCodec's encoding.
+ *
+ * Runs once, in the background at startup, {@link #BATCH_SIZE} attempts per
+ * transaction in id order; completion is recorded in data_migrations. New
+ * attempts are always written encoded, and rows are readable in either
+ * form throughout, so an interrupted run simply starts over on the next
+ * start. The space freed is reused by SQLite for new rows; the file
+ * itself only shrinks on VACUUM.
+ */
+@Service
+public class QuizAttemptDetailsMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizAttemptDetailsMigration.class);
+    private static final int BATCH_SIZE = 500;
+    private static final String NAME = "quiz_attempt_details_v1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateIfNeeded() {
+        List<String> done = jdbcTemplate.queryForList(
+                "SELECT completed_at FROM data_migrations WHERE name = ?", String.class, NAME);
+        if (!done.isEmpty()) {
+            return;
+        }
+        Thread worker = new Thread(this::migrateAll, "attempt-details-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Convert every JSON row and return what was saved: attempts converted,
+     * total bytes before and after, and the average saved per attempt.
+     */
+    public Map<String, Object> migrateAll() {
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+        long converted = 0;
+        long jsonBytes = 0;
+        long encodedBytes = 0;
+        int afterId = 0;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT id, details FROM quiz_attempts WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> new Object[]{rs.getInt(1), rs.getBytes(2)}, afterId, BATCH_SIZE);
+            if (rows.isEmpty()) {
+                break;
+            }
+            afterId = (Integer) rows.get(rows.size() - 1)[0];
+
+            List<Object[]> updates = new ArrayList<>();
+            for (Object[] row : rows) {
+                byte[] details = (byte[]) row[1];
+                if (!AttemptDetailsCodec.isLegacy(details)) {
+                    continue;
+                }
+                byte[] encoded = AttemptDetailsCodec.encode(AttemptDetailsCodec.decode(details));
+                updates.add(new Object[]{encoded, row[0]});
+                jsonBytes += details.length;
+                encodedBytes += encoded.length;
+            }
+            if (!updates.isEmpty()) {
+                transactions.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate("UPDATE quiz_attempts SET details = ? WHERE id = ?", updates));
+                converted += updates.size();
+            }
+        }
+
+        jdbcTemplate.update("INSERT OR REPLACE INTO data_migrations (name, completed_at) VALUES (?, ?)",
+                NAME, LocalDateTime.now().toString());
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("attemptsConverted", converted);
+        report.put("jsonBytes", jsonBytes);
+        report.put("encodedBytes", encodedBytes);
+        report.put("bytesSaved", jsonBytes - encodedBytes);
+        report.put("avgBytesSavedPerAttempt", converted > 0 ? (double) (jsonBytes - encodedBytes) / converted : 0.0);
+        log.info("Converted {} quiz attempt details: {} -> {} bytes, {} saved ({} per attempt)",
+                converted, jsonBytes, encodedBytes, jsonBytes - encodedBytes,
+                String.format("%.1f", report.get("avgBytesSavedPerAttempt")));
+        return report;
+    }
+}
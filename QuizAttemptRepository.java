@@ -2,13 +2,19 @@ package com.mavpal.repository;
 
 import com.mavpal.entity.QuizAttempt;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
 public interface QuizAttemptRepository extends JpaRepository<QuizAttempt, Integer> {
-    List<QuizAttempt> findByUserId(Integer userId);
     List<QuizAttempt> findBySetId(Integer setId);
-    List<QuizAttempt> findByUserIdAndSetId(Integer userId, Integer setId);
+
+    // Each user's best attempt on a set: highest score, then fastest
+    @Query(value = "SELECT user_id, score, duration_ms FROM (" +
+            "SELECT user_id, score, duration_ms, ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY score DESC, duration_ms ASC) AS rn " +
+            "FROM quiz_attempts WHERE set_id = :setId) WHERE rn = 1", nativeQuery = true)
+    List<Object[]> findBestAttemptPerUser(@Param("setId") Integer setId);
 }
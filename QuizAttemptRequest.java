@@ -1,29 +1,56 @@
 package com.mavpal.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.util.List;
 
+/**
+ * Body of POST /api/sets/{setId}/attempts.
+ */
 public class QuizAttemptRequest {
     private List<AnswerSubmission> answers;
-    private Long durationMs;
+    private Integer durationMs;
 
+    /**
+     * One answer. The client sends it as answerOrChoiceIndex, a number for
+     * multiple choice and text for short answer; it is split by type here so
+     * grading never has to inspect it.
+     */
     public static class AnswerSubmission {
-        private Long questionId;
-        private Object answer; // Can be Integer (for MCQ) or String (for short answer)
+        private Integer questionId;
+        private Object answer;
+        private Integer choiceIndex;
+        private String text;
 
-        public Long getQuestionId() {
+        public Integer getQuestionId() {
             return questionId;
         }
 
-        public void setQuestionId(Long questionId) {
+        public void setQuestionId(Integer questionId) {
             this.questionId = questionId;
         }
 
+        /**
+         * The answer as submitted, for echoing back in results.
+         */
+        @JsonProperty("answerOrChoiceIndex")
         public Object getAnswer() {
             return answer;
         }
 
+        @JsonProperty("answerOrChoiceIndex")
         public void setAnswer(Object answer) {
             this.answer = answer;
+            this.choiceIndex = answer instanceof Integer ? (Integer) answer : null;
+            this.text = answer instanceof String ? (String) answer : null;
+        }
+
+        public Integer getChoiceIndex() {
+            return choiceIndex;
+        }
+
+        public String getText() {
+            return text;
         }
     }
 
@@ -35,12 +62,11 @@ public class QuizAttemptRequest {
         this.answers = answers;
     }
 
-    public Long getDurationMs() {
+    public Integer getDurationMs() {
         return durationMs;
     }
 
-    public void setDurationMs(Long durationMs) {
+    public void setDurationMs(Integer durationMs) {
         this.durationMs = durationMs;
     }
 }
-
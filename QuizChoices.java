@@ -0,0 +1,57 @@
+package com.mavpal.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the forms multiple-choice options have arrived in over time into a
+ * plain list of choice texts: a JSON array, a JSON array string, the
+ * "[a, b]" that List.toString() used to store, or a single bare string.
+ */
+public final class QuizChoices {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private QuizChoices() {}
+
+    /**
+     * The choices in {@code value} in order, as an immutable list. Null
+     * elements become empty strings; anything unrecognized is no choices.
+     */
+    public static List<String> normalize(Object value) {
+        if (value instanceof List) {
+            List<String> choices = new ArrayList<>();
+            for (Object choice : (List<?>) value) {
+                choices.add(choice != null ? choice.toString() : "");
+            }
+            return List.copyOf(choices);
+        }
+        if (!(value instanceof String)) {
+            return List.of();
+        }
+
+        String text = ((String) value).trim();
+        if (text.isEmpty()) {
+            return List.of();
+        }
+        if (!text.startsWith("[") || !text.endsWith("]")) {
+            return List.of(text);
+        }
+        try {
+            return normalize(objectMapper.readValue(text, List.class));
+        } catch (Exception e) {
+            // Not JSON, most likely List.toString(); split on commas and strip stray quotes
+            String inner = text.substring(1, text.length() - 1).trim();
+            if (inner.isEmpty()) {
+                return List.of();
+            }
+            List<String> choices = new ArrayList<>();
+            for (String part : inner.split(",")) {
+                choices.add(part.trim().replaceAll("^[\"']|[\"']$", ""));
+            }
+            return List.copyOf(choices);
+        }
+    }
+}
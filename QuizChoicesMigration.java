@@ -0,0 +1,101 @@
+package com.mavpal.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves choices still stored as JSON in quiz_questions.choices into
+ * quiz_choices, one row per choice.
+ *
+ * Runs once, in the background at startup, {@link #BATCH_SIZE} questions
+ * per transaction in id order; completion is recorded in data_migrations.
+ * Each batch is read and rewritten in the same transaction, so a question
+ * edited meanwhile keeps its new choices. QuizService reads the old column
+ * for questions not moved yet, so the move is invisible to clients.
+ */
+@Service
+public class QuizChoicesMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizChoicesMigration.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final String NAME = "quiz_choices_v1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateIfNeeded() {
+        List<String> done = jdbcTemplate.queryForList(
+                "SELECT completed_at FROM data_migrations WHERE name = ?", String.class, NAME);
+        if (!done.isEmpty()) {
+            return;
+        }
+        Thread worker = new Thread(this::migrateAll, "quiz-choices-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Move every question's JSON choices and return how many questions were
+     * moved.
+     */
+    public int migrateAll() {
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+        int moved = 0;
+        int[] afterId = {0};
+        while (true) {
+            Integer batch = transactions.execute(status -> {
+                List<Object[]> rows = jdbcTemplate.query(
+                        "SELECT id, choices, EXISTS (SELECT 1 FROM quiz_choices c WHERE c.question_id = q.id) "
+                                + "FROM quiz_questions q WHERE id > ? AND choices IS NOT NULL ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> new Object[]{rs.getInt(1), rs.getString(2), rs.getBoolean(3)},
+                        afterId[0], BATCH_SIZE);
+                if (rows.isEmpty()) {
+                    return null;
+                }
+                afterId[0] = (Integer) rows.get(rows.size() - 1)[0];
+
+                List<Object[]> inserts = new ArrayList<>();
+                List<Object[]> cleared = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    // Rows already in quiz_choices are newer than the JSON and are kept
+                    if (!(Boolean) row[2]) {
+                        List<String> choices = QuizChoices.normalize(row[1]);
+                        for (int i = 0; i < choices.size(); i++) {
+                            inserts.add(new Object[]{row[0], i, choices.get(i)});
+                        }
+                    }
+                    cleared.add(new Object[]{row[0]});
+                }
+                jdbcTemplate.batchUpdate("INSERT INTO quiz_choices (question_id, choice_index, choice_text) VALUES (?, ?, ?)",
+                        inserts);
+                jdbcTemplate.batchUpdate("UPDATE quiz_questions SET choices = NULL WHERE id = ?", cleared);
+                return rows.size();
+            });
+            if (batch == null) {
+                break;
+            }
+            moved += batch;
+        }
+
+        jdbcTemplate.update("INSERT OR REPLACE INTO data_migrations (name, completed_at) VALUES (?, ?)",
+                NAME, LocalDateTime.now().toString());
+        log.info("Moved the choices of {} quiz questions to quiz_choices", moved);
+        return moved;
+    }
+}
@@ -1,10 +1,11 @@
 package com.mavpal.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mavpal.entity.QuizQuestion;
 import com.mavpal.entity.Set;
 import com.mavpal.repository.QuizQuestionRepository;
 import com.mavpal.repository.SetRepository;
+import com.mavpal.service.QuestionStatsService;
+import com.mavpal.service.QuizService;
 import com.mavpal.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -28,10 +29,13 @@ public class QuizController {
     private SetRepository setRepository;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private QuizService quizService;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private QuestionStatsService questionStatsService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
 
     private Integer getUserIdFromToken(String authHeader) {
         String token = authHeader.substring(7);
@@ -68,83 +72,6 @@ public class QuizController {
         
         question.setQuestionText((String) request.get("questionText"));
         
-        // For MCQ, ALWAYS store choices as JSON string (EXACT format as practice quiz)
-        if ("mcq".equals(question.getType())) {
-            if (request.get("choices") != null) {
-                Object choicesObj = request.get("choices");
-                String choicesJson = null;
-                
-                // ALWAYS use ObjectMapper first - it creates proper JSON
-                try {
-                    if (choicesObj instanceof List) {
-                        // This creates: ["choice1","choice2","choice3"] - EXACT practice quiz format
-                        // ObjectMapper.writeValueAsString will create proper JSON with escaped quotes
-                        choicesJson = objectMapper.writeValueAsString(choicesObj);
-                        System.out.println("ObjectMapper created JSON: " + choicesJson);
-                    } else if (choicesObj instanceof String) {
-                        // Already a string - validate and fix if needed
-                        String str = ((String) choicesObj).trim();
-                        if (str.startsWith("[") && str.endsWith("]")) {
-                            // Try to parse to validate it's proper JSON
-                            try {
-                                List<?> parsed = objectMapper.readValue(str, List.class);
-                                choicesJson = objectMapper.writeValueAsString(parsed);
-                                System.out.println("Fixed string JSON: " + choicesJson);
-                            } catch (Exception e) {
-                                // Invalid JSON string - try to fix it
-                                System.err.println("Invalid JSON string, attempting to fix: " + str);
-                                // Remove brackets and split
-                                String inner = str.substring(1, str.length() - 1).trim();
-                                if (inner.length() > 0) {
-                                    String[] parts = inner.split(",");
-                                    List<String> fixedList = new java.util.ArrayList<>();
-                                    for (String part : parts) {
-                                        fixedList.add(part.trim().replaceAll("^[\"']|[\"']$", ""));
-                                    }
-                                    choicesJson = objectMapper.writeValueAsString(fixedList);
-                                    System.out.println("Fixed invalid JSON to: " + choicesJson);
-                                } else {
-                                    choicesJson = "[]";
-                                }
-                            }
-                        } else {
-                            // Not JSON format, treat as single string and wrap in array
-                            List<String> singleChoice = List.of(str);
-                            choicesJson = objectMapper.writeValueAsString(singleChoice);
-                        }
-                    }
-                } catch (Exception e) {
-                    System.err.println("ObjectMapper failed: " + e.getMessage());
-                    e.printStackTrace();
-                }
-                
-                // If ObjectMapper failed, create JSON manually (EXACT practice quiz format)
-                if (choicesJson == null && choicesObj instanceof List) {
-                    List<?> choices = (List<?>) choicesObj;
-                    StringBuilder sb = new StringBuilder("[");
-                    for (int i = 0; i < choices.size(); i++) {
-                        if (i > 0) sb.append(",");
-                        String choice = choices.get(i).toString();
-                        // Escape quotes and wrap in quotes - EXACT format: "choice"
-                        choice = choice.replace("\\", "\\\\").replace("\"", "\\\"");
-                        sb.append("\"").append(choice).append("\"");
-                    }
-                    sb.append("]");
-                    choicesJson = sb.toString();
-                }
-                
-                if (choicesJson == null) {
-                    choicesJson = "[]";
-                }
-                
-                question.setChoices(choicesJson);
-                System.out.println("DEBUG: Saved MCQ choices (format check): " + choicesJson);
-            } else {
-                System.err.println("ERROR: MCQ question created without choices!");
-                question.setChoices("[]");
-            }
-        }
-        
         if (request.get("correctIndex") != null) {
             question.setCorrectIndex((Integer) request.get("correctIndex"));
         }
@@ -152,17 +79,35 @@ public class QuizController {
         question.setHint((String) request.get("hint"));
         question.setOrder((Integer) request.getOrDefault("order", 0));
 
+        Object acceptedAnswers = request.get("acceptedAnswers");
+        if (acceptedAnswers != null && !(acceptedAnswers instanceof List)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "acceptedAnswers must be a list"));
+        }
+
         question = quizQuestionRepository.save(question);
+        List<String> savedChoices = List.of();
+        if ("mcq".equals(question.getType())) {
+            savedChoices = quizService.setChoices(question.getId(), request.get("choices"));
+        }
+        List<String> savedAnswers = List.of();
+        if ("short".equals(question.getType()) && acceptedAnswers != null) {
+            savedAnswers = quizService.setAcceptedAnswers(question.getId(), (List<?>) acceptedAnswers);
+        }
+        quizService.invalidateQuestions(setId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("id", question.getId());
         response.put("setId", question.getSetId());
         response.put("type", question.getType());
         response.put("questionText", question.getQuestionText());
-        response.put("choices", question.getChoices());
+        response.put("choices", savedChoices);
         response.put("correctIndex", question.getCorrectIndex());
         response.put("hint", question.getHint());
         response.put("order", question.getOrder());
+        if ("short".equals(question.getType())) {
+            response.put("acceptedAnswers", savedAnswers);
+        }
 
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
@@ -178,27 +123,48 @@ public class QuizController {
         }
 
         List<QuizQuestion> questions = quizQuestionRepository.findBySetId(setId);
+        Map<Integer, List<String>> choices = quizService.getChoices(setId);
+        Map<Integer, List<String>> acceptedAnswers = quizService.getAcceptedAnswers(setId);
         List<Map<String, Object>> response = questions.stream().map(q -> {
             Map<String, Object> map = new HashMap<>();
             map.put("id", q.getId());
             map.put("setId", q.getSetId());
             map.put("type", q.getType() != null ? q.getType() : "mcq"); // Default to mcq if null
             map.put("questionText", q.getQuestionText());
-            // ALWAYS include choices field - even if null, return empty string
-            map.put("choices", q.getChoices() != null ? q.getChoices() : "[]");
+            // ALWAYS include choices field - an empty list for questions without any
+            map.put("choices", choices.getOrDefault(q.getId(), List.of()));
             map.put("correctIndex", q.getCorrectIndex());
             map.put("hint", q.getHint());
             map.put("order", q.getOrder());
-            
-            // Debug logging
-            System.out.println("DEBUG GET: Question " + q.getId() + " - type: " + q.getType() + ", choices: " + q.getChoices());
-            
+            if ("short".equals(q.getType())) {
+                map.put("acceptedAnswers", acceptedAnswers.getOrDefault(q.getId(), List.of()));
+            }
             return map;
         }).collect(Collectors.toList());
 
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/questions/stats")
+    public ResponseEntity<?> getQuestionStats(@PathVariable Integer setId,
+                                              @RequestHeader("Authorization") String authHeader) {
+        Integer userId = getUserIdFromToken(authHeader);
+        Set set = setRepository.findById(setId)
+                .orElse(null);
+
+        if (set == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Set not found"));
+        }
+
+        if (!set.getCreatedBy().equals(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not authorized to view question stats for this set"));
+        }
+
+        return ResponseEntity.ok(questionStatsService.getSetStats(setId));
+    }
+
     @PatchMapping("/questions/{questionId}")
     public ResponseEntity<?> updateQuestion(@PathVariable Integer setId,
                                              @PathVariable Integer questionId,
@@ -229,10 +195,6 @@ public class QuizController {
         if (request.containsKey("questionText")) {
             question.setQuestionText((String) request.get("questionText"));
         }
-        if (request.containsKey("choices")) {
-            List<?> choices = (List<?>) request.get("choices");
-            question.setChoices(choices.toString());
-        }
         if (request.containsKey("correctIndex")) {
             question.setCorrectIndex((Integer) request.get("correctIndex"));
         }
@@ -242,18 +204,33 @@ public class QuizController {
         if (request.containsKey("order")) {
             question.setOrder((Integer) request.get("order"));
         }
+        Object acceptedAnswers = request.get("acceptedAnswers");
+        if (acceptedAnswers != null && !(acceptedAnswers instanceof List)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "acceptedAnswers must be a list"));
+        }
 
         question = quizQuestionRepository.save(question);
+        if (request.containsKey("choices")) {
+            quizService.setChoices(question.getId(), request.get("choices"));
+        }
+        if ("short".equals(question.getType()) && acceptedAnswers != null) {
+            quizService.setAcceptedAnswers(question.getId(), (List<?>) acceptedAnswers);
+        }
+        quizService.invalidateQuestions(setId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("id", question.getId());
         response.put("setId", question.getSetId());
         response.put("type", question.getType());
         response.put("questionText", question.getQuestionText());
-        response.put("choices", question.getChoices());
+        response.put("choices", quizService.getChoices(setId).getOrDefault(question.getId(), List.of()));
         response.put("correctIndex", question.getCorrectIndex());
         response.put("hint", question.getHint());
         response.put("order", question.getOrder());
+        if ("short".equals(question.getType())) {
+            response.put("acceptedAnswers", quizService.getAcceptedAnswers(setId).getOrDefault(question.getId(), List.of()));
+        }
 
         return ResponseEntity.ok(response);
     }
@@ -285,6 +262,10 @@ public class QuizController {
         }
 
         quizQuestionRepository.delete(question);
+        // Foreign keys are not enforced on every pooled connection, so don't rely on the cascade
+        quizService.setAcceptedAnswers(questionId, List.of());
+        quizService.setChoices(questionId, List.of());
+        quizService.invalidateQuestions(setId);
         return ResponseEntity.ok(Map.of("message", "Question deleted successfully"));
     }
 }
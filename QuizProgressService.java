@@ -0,0 +1,190 @@
+package com.mavpal.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Each user's quiz progress: their best attempt on every set they have
+ * taken, and their attempt history a page at a time.
+ *
+ * Bests are kept in user_set_best, one row per user and set, which
+ * {@link #record} upserts in the same transaction as each graded attempt.
+ * The progress dashboard is therefore one primary-key range read however
+ * many attempts the user has made. Rows for attempts made before the table
+ * existed are filled in once, in the background, at the next start.
+ */
+@Service
+public class QuizProgressService {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizProgressService.class);
+
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final String BACKFILL_NAME = "user_set_best_v1";
+
+    // Keeps the higher score, and on a tie the faster time; a missing time is slowest
+    private static final String UPSERT_SQL = "INSERT INTO user_set_best "
+            + "(user_id, set_id, best_score, best_duration_ms, attempts, last_attempt_at) VALUES (?, ?, ?, ?, 1, ?) "
+            + "ON CONFLICT (user_id, set_id) DO UPDATE SET "
+            + "best_duration_ms = CASE WHEN excluded.best_score > best_score OR (excluded.best_score = best_score "
+            + "AND COALESCE(excluded.best_duration_ms, 2147483647) < COALESCE(best_duration_ms, 2147483647)) "
+            + "THEN excluded.best_duration_ms ELSE best_duration_ms END, "
+            + "best_score = MAX(best_score, excluded.best_score), "
+            + "attempts = attempts + 1, last_attempt_at = excluded.last_attempt_at";
+
+    private static final String BACKFILL_SQL = "INSERT OR REPLACE INTO user_set_best "
+            + "(user_id, set_id, best_score, best_duration_ms, attempts, last_attempt_at) "
+            + "SELECT user_id, set_id, score, duration_ms, attempts, last_attempt_at FROM ("
+            + "SELECT user_id, set_id, COALESCE(score, 0) AS score, duration_ms, "
+            + "COUNT(*) OVER (PARTITION BY user_id, set_id) AS attempts, "
+            + "MAX(completed_at) OVER (PARTITION BY user_id, set_id) AS last_attempt_at, "
+            + "ROW_NUMBER() OVER (PARTITION BY user_id, set_id "
+            + "ORDER BY COALESCE(score, 0) DESC, COALESCE(duration_ms, 2147483647) ASC) AS rn "
+            + "FROM quiz_attempts) WHERE rn = 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Count a graded attempt toward the user's best on the set. Must run in
+     * the transaction that saves the attempt.
+     */
+    public void record(Integer userId, Integer setId, double score, Integer durationMs, String completedAt) {
+        jdbcTemplate.update(UPSERT_SQL, userId, setId, score, durationMs, completedAt);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfNeeded() {
+        List<String> done = jdbcTemplate.queryForList(
+                "SELECT completed_at FROM data_migrations WHERE name = ?", String.class, BACKFILL_NAME);
+        if (!done.isEmpty()) {
+            return;
+        }
+        Thread worker = new Thread(this::backfill, "user-set-best-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Rebuild every user_set_best row from quiz_attempts. Runs as one
+     * statement in one transaction, so attempts graded meanwhile are either
+     * included or upserted afterwards, never lost or counted twice.
+     */
+    public int backfill() {
+        int rows = new TransactionTemplate(transactionManager).execute(status -> {
+            int updated = jdbcTemplate.update(BACKFILL_SQL);
+            jdbcTemplate.update("INSERT OR REPLACE INTO data_migrations (name, completed_at) VALUES (?, ?)",
+                    BACKFILL_NAME, LocalDateTime.now().toString());
+            return updated;
+        });
+        log.info("Backfilled {} best quiz scores", rows);
+        return rows;
+    }
+
+    /**
+     * The user's best on every set they have attempted and that still
+     * exists, in set id order, with set titles and totals across all of them.
+     */
+    public Map<String, Object> getProgress(Integer userId) {
+        List<Map<String, Object>> sets = new ArrayList<>();
+        long[] attempts = {0};
+        int[] perfect = {0};
+        double[] scoreSum = {0};
+        jdbcTemplate.query("SELECT b.set_id, s.title, s.subject, b.best_score, b.best_duration_ms, b.attempts, "
+                        + "b.last_attempt_at FROM user_set_best b JOIN sets s ON s.id = b.set_id "
+                        + "WHERE b.user_id = ? ORDER BY b.set_id",
+                rs -> {
+                    Map<String, Object> set = new HashMap<>();
+                    set.put("setId", rs.getInt(1));
+                    set.put("title", rs.getString(2));
+                    set.put("subject", rs.getString(3));
+                    set.put("bestScore", rs.getDouble(4));
+                    set.put("bestDurationMs", rs.getObject(5) != null ? rs.getInt(5) : null);
+                    set.put("attempts", rs.getInt(6));
+                    set.put("lastAttemptAt", rs.getString(7));
+                    sets.add(set);
+                    attempts[0] += rs.getInt(6);
+                    scoreSum[0] += rs.getDouble(4);
+                    if (rs.getDouble(4) >= 100.0) {
+                        perfect[0]++;
+                    }
+                },
+                userId);
+
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("sets", sets);
+        progress.put("setsAttempted", sets.size());
+        progress.put("totalAttempts", attempts[0]);
+        progress.put("perfectSets", perfect[0]);
+        progress.put("averageBestScore", sets.isEmpty() ? 0.0 : scoreSum[0] / sets.size());
+        return progress;
+    }
+
+    /**
+     * One page of the user's attempts, newest first, on one set or, if
+     * {@code setId} is null, on all of them. {@code cursor} is the id of the
+     * last attempt on the previous page, or null for the first page; the
+     * response carries the cursor for the next page, or null at the end.
+     * Per-question results are left out; fetch a single attempt for those.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Map<String, Object> getAttempts(Integer userId, Integer setId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int beforeId = cursor != null && !cursor.isBlank() ? Integer.parseInt(cursor) : Integer.MAX_VALUE;
+
+        StringBuilder sql = new StringBuilder("SELECT id, set_id, score, xp_earned, started_at, completed_at, "
+                + "duration_ms FROM quiz_attempts WHERE user_id = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        if (setId != null) {
+            sql.append(" AND set_id = ?");
+            args.add(setId);
+        }
+        sql.append(" AND id < ? ORDER BY id DESC LIMIT ?");
+        args.add(beforeId);
+        args.add(pageSize + 1);
+        List<Map<String, Object>> attempts = jdbcTemplate.query(sql.toString(),
+                (rs, rowNum) -> toMap(rs), args.toArray());
+
+        String nextCursor = null;
+        if (attempts.size() > pageSize) {
+            attempts.remove(pageSize);
+            nextCursor = String.valueOf(attempts.get(pageSize - 1).get("id"));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("attempts", attempts);
+        response.put("nextCursor", nextCursor);
+        return response;
+    }
+
+    private static Map<String, Object> toMap(ResultSet rs) throws SQLException {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", rs.getInt("id"));
+        map.put("setId", rs.getInt("set_id"));
+        map.put("score", rs.getDouble("score"));
+        map.put("xpEarned", rs.getInt("xp_earned"));
+        map.put("startedAt", rs.getString("started_at"));
+        map.put("completedAt", rs.getString("completed_at"));
+        map.put("durationMs", rs.getObject("duration_ms") != null ? rs.getInt("duration_ms") : null);
+        return map;
+    }
+}
@@ -19,7 +19,7 @@ public class QuizQuestion {
     private String questionText;
 
     @Column(columnDefinition = "TEXT")
-    private String choices; // JSON array string for MCQ
+    private String choices; // Legacy JSON choices, moved to quiz_choices by QuizChoicesMigration
 
     @Column(name = "correct_index")
     private Integer correctIndex;
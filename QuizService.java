@@ -1,14 +1,14 @@
 package com.mavpal.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mavpal.dto.QuizAttemptRequest.AnswerSubmission;
+import com.mavpal.dto.XpAward;
 import com.mavpal.entity.QuizAttempt;
-import com.mavpal.entity.QuizQuestion;
-import com.mavpal.entity.Set;
 import com.mavpal.repository.QuizAttemptRepository;
 import com.mavpal.repository.QuizQuestionRepository;
 import com.mavpal.repository.SetRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,6 +17,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class QuizService {
@@ -33,55 +35,64 @@ public class QuizService {
     @Autowired
     private XPService xpService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private SetLeaderboardService setLeaderboardService;
 
-    @Transactional
-    public Map<String, Object> gradeQuiz(Integer setId, Integer userId, List<Map<String, Object>> answers, Integer durationMs) {
-        Set set = setRepository.findById(setId)
-                .orElseThrow(() -> new RuntimeException("Set not found"));
+    @Autowired
+    private QuestionStatsService questionStatsService;
 
-        List<QuizQuestion> questions = quizQuestionRepository.findBySetId(setId);
-        if (questions.isEmpty()) {
+    @Autowired
+    private QuizProgressService quizProgressService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Compiled answer key per set id; QuizController evicts a set's key whenever its questions change
+    private final Map<Integer, AnswerKey> answerKeys = new ConcurrentHashMap<>();
+
+    // Choices of each set's questions by question id, evicted along with the answer key
+    private final Map<Integer, Map<Integer, List<String>>> choicesBySet = new ConcurrentHashMap<>();
+
+    /**
+     * Grade the attempt, save it and award its XP. Awards XP, so callers run
+     * it on the user's XP lane.
+     */
+    @Transactional
+    public Map<String, Object> gradeQuiz(Integer setId, Integer userId, List<AnswerSubmission> answers, Integer durationMs) {
+        AnswerKey key = getAnswerKey(setId);
+        if (key.size() == 0) {
             throw new RuntimeException("No questions found for this set");
         }
 
-        int correct = 0;
-        int total = questions.size();
-        List<Map<String, Object>> results = new ArrayList<>();
+        // Match answers to questions in one pass; the first answer to a question counts
+        int total = key.size();
+        AnswerSubmission[] given = new AnswerSubmission[total];
+        for (AnswerSubmission answer : answers) {
+            if (answer == null || answer.getQuestionId() == null) {
+                continue;
+            }
+            int position = key.indexOf(answer.getQuestionId());
+            if (position >= 0 && given[position] == null) {
+                given[position] = answer;
+            }
+        }
 
-        for (QuizQuestion question : questions) {
+        int correct = 0;
+        boolean[] correctness = new boolean[total];
+        List<Map<String, Object>> results = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
             Map<String, Object> result = new HashMap<>();
-            result.put("questionId", question.getId());
+            result.put("questionId", key.questionId(i));
             result.put("correct", false);
-
-            // Find user's answer for this question
-            Map<String, Object> userAnswer = answers.stream()
-                    .filter(a -> question.getId().equals(a.get("questionId")))
-                    .findFirst()
-                    .orElse(null);
-
-            if (userAnswer != null) {
-                boolean isCorrect = false;
-
-                if ("mcq".equals(question.getType())) {
-                    // Multiple choice: check if selected index matches correct index
-                    Integer selectedIndex = (Integer) userAnswer.get("answerOrChoiceIndex");
-                    if (selectedIndex != null && selectedIndex.equals(question.getCorrectIndex())) {
-                        isCorrect = true;
-                        correct++;
-                    }
-                } else if ("short".equals(question.getType())) {
-                    // Short answer: case-insensitive, trimmed comparison
-                    String userAnswerText = ((String) userAnswer.get("answerOrChoiceIndex")).trim().toLowerCase();
-                    // For short answer, we'd need to store the correct answer text
-                    // For now, we'll use a simple approach - this would need enhancement
-                    // This is a limitation - short answer questions need correct answer text stored
+            if (given[i] != null) {
+                boolean isCorrect = key.isCorrect(i, given[i]);
+                if (isCorrect) {
+                    correct++;
                 }
-
+                correctness[i] = isCorrect;
                 result.put("correct", isCorrect);
-                result.put("userAnswer", userAnswer.get("answerOrChoiceIndex"));
+                result.put("userAnswer", given[i].getAnswer());
             }
-
             results.add(result);
         }
 
@@ -90,18 +101,17 @@ public class QuizService {
 
         // Calculate XP earned - only award if score is 100%
         int baseXp = xpService.getXpForQuizCompletion(score);
-        int xpEarned = 0;
+        XpAward award;
         if (baseXp > 0) {
             // Only award XP if score is 100%
-            xpEarned = xpService.awardXp(userId, baseXp, "quiz_complete", setId);
+            award = xpService.award(userId, baseXp, "quiz_complete", setId);
         } else {
             // Still create XP event (with 0 XP) so checklist can detect quiz completion
             // This allows the checklist to update even if score < 100%
             xpService.createXpEvent(userId, 0, "quiz_complete", setId);
+            award = xpService.getTotals(userId);
         }
-
-        // Get updated user info
-        // This would require fetching user, but for now we'll return what we can
+        int xpEarned = award.getXpEarned();
 
         // Create quiz attempt record
         QuizAttempt attempt = new QuizAttempt();
@@ -112,23 +122,131 @@ public class QuizService {
         attempt.setStartedAt(LocalDateTime.now().minusSeconds(durationMs / 1000).toString());
         attempt.setCompletedAt(LocalDateTime.now().toString());
         attempt.setDurationMs(durationMs);
-        
-        try {
-            attempt.setDetails(objectMapper.writeValueAsString(results));
-        } catch (Exception e) {
-            attempt.setDetails("[]");
-        }
+        attempt.setDetails(AttemptDetailsCodec.encode(results));
 
         attempt = quizAttemptRepository.save(attempt);
+        quizProgressService.record(userId, setId, score, durationMs, attempt.getCompletedAt());
+        setLeaderboardService.onAttemptGraded(setId, userId, score, durationMs);
+        questionStatsService.record(key, given, correctness);
 
         Map<String, Object> response = new HashMap<>();
         response.put("score", score);
         response.put("correct", correct);
         response.put("total", total);
         response.put("xpEarned", xpEarned);
+        response.put("newXpTotal", award.getNewXpTotal());
+        response.put("level", award.getLevel());
         response.put("attemptId", attempt.getId());
         response.put("results", results);
 
         return response;
     }
+
+    /**
+     * Accepted answers of the set's short-answer questions, by question id.
+     */
+    public Map<Integer, List<String>> getAcceptedAnswers(Integer setId) {
+        Map<Integer, List<String>> accepted = new HashMap<>();
+        jdbcTemplate.query("SELECT a.question_id, a.answer FROM quiz_questions q "
+                        + "JOIN quiz_accepted_answers a ON a.question_id = q.id WHERE q.set_id = ?",
+                rs -> {
+                    accepted.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>()).add(rs.getString(2));
+                },
+                setId);
+        return accepted;
+    }
+
+    /**
+     * Replace the question's accepted answers. Blank answers and duplicates
+     * are skipped. The caller invalidates the set's cached questions.
+     */
+    @Transactional
+    public List<String> setAcceptedAnswers(Integer questionId, List<?> answers) {
+        jdbcTemplate.update("DELETE FROM quiz_accepted_answers WHERE question_id = ?", questionId);
+        List<String> saved = new ArrayList<>();
+        for (Object answer : answers) {
+            String text = answer != null ? answer.toString().trim() : "";
+            if (!text.isEmpty() && !saved.contains(text)) {
+                saved.add(text);
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO quiz_accepted_answers (question_id, answer) VALUES (?, ?)",
+                saved.stream().map(text -> new Object[]{questionId, text}).toList());
+        return saved;
+    }
+
+    /**
+     * Choices of the set's questions by question id, each an immutable list
+     * in choice order. Questions without choices map to an empty list.
+     * Cached until the set's questions change.
+     */
+    public Map<Integer, List<String>> getChoices(Integer setId) {
+        return choicesBySet.computeIfAbsent(setId, this::loadChoices);
+    }
+
+    /**
+     * Replace the question's choices with {@code choices}, in any form
+     * {@link QuizChoices#normalize} accepts, and return them as stored. The
+     * caller invalidates the set's cached questions.
+     */
+    @Transactional
+    public List<String> setChoices(Integer questionId, Object choices) {
+        List<String> saved = QuizChoices.normalize(choices);
+        jdbcTemplate.update("DELETE FROM quiz_choices WHERE question_id = ?", questionId);
+        List<Object[]> rows = new ArrayList<>(saved.size());
+        for (int i = 0; i < saved.size(); i++) {
+            rows.add(new Object[]{questionId, i, saved.get(i)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO quiz_choices (question_id, choice_index, choice_text) VALUES (?, ?, ?)", rows);
+        // The legacy JSON column must not resurface if the choices are later cleared
+        jdbcTemplate.update("UPDATE quiz_questions SET choices = NULL WHERE id = ?", questionId);
+        return saved;
+    }
+
+    /**
+     * Drop the cached answer key and choices for the set, after its
+     * questions were added, edited or deleted, or the set itself was deleted.
+     */
+    public void invalidateQuestions(Integer setId) {
+        answerKeys.remove(setId);
+        choicesBySet.remove(setId);
+    }
+
+    // Questions not yet moved to quiz_choices by QuizChoicesMigration still
+    // have their choices in quiz_questions.choices
+    private Map<Integer, List<String>> loadChoices(Integer setId) {
+        Map<Integer, String> legacy = new HashMap<>();
+        Map<Integer, TreeMap<Integer, String>> rows = new HashMap<>();
+        jdbcTemplate.query("SELECT q.id, q.choices, c.choice_index, c.choice_text FROM quiz_questions q "
+                        + "LEFT JOIN quiz_choices c ON c.question_id = q.id WHERE q.set_id = ?",
+                rs -> {
+                    TreeMap<Integer, String> choices = rows.computeIfAbsent(rs.getInt(1), id -> new TreeMap<>());
+                    if (rs.getObject(3) != null) {
+                        choices.put(rs.getInt(3), rs.getString(4));
+                    } else if (rs.getString(2) != null) {
+                        legacy.put(rs.getInt(1), rs.getString(2));
+                    }
+                },
+                setId);
+
+        Map<Integer, List<String>> choices = new HashMap<>();
+        for (Map.Entry<Integer, TreeMap<Integer, String>> entry : rows.entrySet()) {
+            List<String> list = !entry.getValue().isEmpty()
+                    ? List.copyOf(entry.getValue().values())
+                    : QuizChoices.normalize(legacy.get(entry.getKey()));
+            choices.put(entry.getKey(), list);
+        }
+        return Map.copyOf(choices);
+    }
+
+    // A remove() for the set waits for a load in progress, so an edit that
+    // commits during the load still evicts the key it produced
+    private AnswerKey getAnswerKey(Integer setId) {
+        return answerKeys.computeIfAbsent(setId, id -> {
+            if (!setRepository.existsById(id)) {
+                throw new RuntimeException("Set not found");
+            }
+            return AnswerKey.compile(quizQuestionRepository.findBySetId(id), getAcceptedAnswers(id));
+        });
+    }
 }
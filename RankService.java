@@ -0,0 +1,179 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.LeaderboardEntry;
+import com.mavpal.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Answers "how many users have more XP than N" and "what rank is user X"
+ * in O(log maxXp) using a Fenwick tree indexed by XP value.
+ *
+ * Ranks match UserRepository.getUserRank: users with equal XP share a rank,
+ * and rank = number of users with strictly more XP + 1.
+ */
+@Service
+public class RankService {
+
+    private static final Logger log = LoggerFactory.getLogger(RankService.class);
+
+    private static final int INITIAL_CAPACITY = 1024; // must be a power of two
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Integer> xpByUser = new HashMap<>();
+    private int[] tree = new int[INITIAL_CAPACITY + 1]; // 1-based, slot xp + 1
+    private int capacity = INITIAL_CAPACITY;
+    private int total = 0;
+
+    public void reset(Collection<LeaderboardEntry> entries) {
+        lock.writeLock().lock();
+        try {
+            xpByUser.clear();
+            tree = new int[INITIAL_CAPACITY + 1];
+            capacity = INITIAL_CAPACITY;
+            total = 0;
+            for (LeaderboardEntry entry : entries) {
+                int xp = Math.max(0, entry.getXp());
+                xpByUser.put(entry.getId(), xp);
+                add(xp, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Record the user's current XP, moving them out of their old bucket.
+     */
+    public void update(Integer userId, int xp) {
+        int newXp = Math.max(0, xp);
+        lock.writeLock().lock();
+        try {
+            Integer oldXp = xpByUser.put(userId, newXp);
+            if (oldXp != null) {
+                if (oldXp == newXp) {
+                    return;
+                }
+                add(oldXp, -1);
+            }
+            add(newXp, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer userId) {
+        lock.writeLock().lock();
+        try {
+            Integer oldXp = xpByUser.remove(userId);
+            if (oldXp != null) {
+                add(oldXp, -1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of users with strictly more than {@code xp} XP.
+     */
+    public long countAbove(int xp) {
+        lock.readLock().lock();
+        try {
+            return total - countAtMost(xp);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rank of the user, or null if the user is not tracked.
+     */
+    public Long rankOf(Integer userId) {
+        lock.readLock().lock();
+        try {
+            Integer xp = xpByUser.get(userId);
+            if (xp == null) {
+                return null;
+            }
+            return (long) (total - countAtMost(xp)) + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compare up to {@code sampleSize} tracked users against the SQL rank query.
+     * Mismatches are printed and counted; a non-zero result means the tree and
+     * the users table have drifted apart.
+     */
+    public int checkConsistency(int sampleSize) {
+        List<Integer> sample;
+        lock.readLock().lock();
+        try {
+            sample = new ArrayList<>(Math.min(sampleSize, xpByUser.size()));
+            for (Integer userId : xpByUser.keySet()) {
+                if (sample.size() >= sampleSize) {
+                    break;
+                }
+                sample.add(userId);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int mismatches = 0;
+        for (Integer userId : sample) {
+            Long expected = userRepository.getUserRank(userId);
+            Long actual = rankOf(userId);
+            if (expected != null && !expected.equals(actual)) {
+                mismatches++;
+                log.warn("Rank mismatch for user {}: sql={}, tree={}", userId, expected, actual);
+            }
+        }
+        return mismatches;
+    }
+
+    private void add(int xp, int delta) {
+        ensureCapacity(xp);
+        for (int i = xp + 1; i <= capacity; i += i & -i) {
+            tree[i] += delta;
+        }
+        total += delta;
+    }
+
+    private int countAtMost(int xp) {
+        if (xp < 0) {
+            return 0;
+        }
+        int sum = 0;
+        for (int i = Math.min(xp + 1, capacity); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int xp) {
+        while (xp >= capacity) {
+            // Doubling a power-of-two Fenwick tree only adds one non-empty node:
+            // the new root covers (0, 2n] and holds the current total.
+            int[] grown = Arrays.copyOf(tree, capacity * 2 + 1);
+            grown[capacity * 2] = total;
+            tree = grown;
+            capacity *= 2;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.ScoredMember;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorted-set storage behind every leaderboard. A store holds any number of
+ * named boards; each board orders its members by (score DESC, memberId ASC).
+ *
+ * Implementations are selected with {@code mavpal.leaderboard.store}:
+ * {@code memory} keeps boards in this JVM, {@code sqlite} keeps them in a
+ * SQLite file that several application instances can share.
+ */
+public interface RankStore {
+
+    /**
+     * True when other application instances may write to the same boards,
+     * i.e. in-process caches of board contents cannot be trusted.
+     */
+    boolean isShared();
+
+    /**
+     * Replace the whole board with {@code scores} (memberId to score).
+     */
+    void replaceBoard(String board, Map<Integer, Integer> scores);
+
+    void deleteBoard(String board);
+
+    void setScore(String board, Integer memberId, int score);
+
+    /**
+     * Add {@code delta} to the member's score, starting from 0 if absent.
+     *
+     * @return the new score
+     */
+    int incrementScore(String board, Integer memberId, int delta);
+
+    /**
+     * @return the member's score, or null if the member is not on the board
+     */
+    Integer getScore(String board, Integer memberId);
+
+    /**
+     * @return the member's 1-based position on the board, or null if absent
+     */
+    Integer rank(String board, Integer memberId);
+
+    /**
+     * Number of members with a score strictly greater than {@code score}.
+     */
+    long countAbove(String board, int score);
+
+    /**
+     * Up to {@code limit} members starting at 1-based position {@code fromRank}.
+     */
+    List<ScoredMember> rangeByRank(String board, int fromRank, int limit);
+
+    /**
+     * Up to {@code limit} members sorting strictly after (score, memberId).
+     */
+    List<ScoredMember> rangeAfter(String board, int score, Integer memberId, int limit);
+
+    /**
+     * The member plus up to {@code radius} members above and below, or an
+     * empty list if the member is not on the board.
+     */
+    List<ScoredMember> rangeAround(String board, Integer memberId, int radius);
+
+    /**
+     * Changes whenever the board's top rows may have changed. Versions are
+     * unique across boards, so a cached snapshot can never be mistaken for a
+     * different board's.
+     */
+    long topVersion(String board);
+}
@@ -0,0 +1,133 @@
+package com.mavpal.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on the SQL behind every repository method and
+ * fails if any of it reads a whole table or sorts through a temporary
+ * B-tree, so a schema or query change cannot quietly drop an index.
+ *
+ * Hibernate hands each statement to {@link Capture} before preparing it;
+ * the test calls every finder once and explains what each call sent. A new
+ * repository method needs a call here.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.datasource.url=jdbc:sqlite:build/query-plan-test.db",
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                        + "com.mavpal.repository.RepositoryQueryPlanTest$Capture"
+        })
+class RepositoryQueryPlanTest {
+
+    // Per-user totals over an index range: grouping sorts only the rows in
+    // the range, and no index can serve both the range and the grouping
+    private static final Set<String> GROUPED_RANGE_READS = Set.of(
+            "XpEventRepository.sumXpByUserSince",
+            "XpEventRepository.sumXpByUserForSubject");
+
+    private static final List<String> captured = Collections.synchronizedList(new ArrayList<>());
+
+    public static class Capture implements StatementInspector {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String inspect(String sql) {
+            captured.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private SetRepository setRepository;
+    @Autowired private FlashcardRepository flashcardRepository;
+    @Autowired private QuizQuestionRepository quizQuestionRepository;
+    @Autowired private QuizAttemptRepository quizAttemptRepository;
+    @Autowired private XpEventRepository xpEventRepository;
+    @Autowired private DailyTaskRepository dailyTaskRepository;
+    @Autowired private DailyTaskStatusRepository dailyTaskStatusRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private final List<String> problems = new ArrayList<>();
+    private int explained;
+
+    @Test
+    void repositoryQueriesUseIndexes() {
+        // findAllLeaderboardEntries reads every user on purpose and is left out
+        check("UserRepository.findByUtaId", () -> userRepository.findByUtaId("1000000000"));
+        check("UserRepository.findByEmail", () -> userRepository.findByEmail("someone@mavs.uta.edu"));
+        check("UserRepository.existsByUtaId", () -> userRepository.existsByUtaId("1000000000"));
+        check("UserRepository.existsByEmail", () -> userRepository.existsByEmail("someone@mavs.uta.edu"));
+        check("UserRepository.getUserRank", () -> userRepository.getUserRank(1));
+        check("UserRepository.findLeaderboardEntriesByIds",
+                () -> userRepository.findLeaderboardEntriesByIds(List.of(1, 2)));
+        check("SetRepository.findByCreatedBy", () -> setRepository.findByCreatedBy(1));
+        check("SetRepository.findByVisibility", () -> setRepository.findByVisibility("public"));
+        check("SetRepository.findPublicOrUserSets", () -> setRepository.findPublicOrUserSets(1));
+        check("SetRepository.findPublicOrUserSetsBySubject",
+                () -> setRepository.findPublicOrUserSetsBySubject(1, "Math"));
+        check("SetRepository.findPublicOrUserSetsBySubject",
+                () -> setRepository.findPublicOrUserSetsBySubject(1, null));
+        check("FlashcardRepository.findBySetId", () -> flashcardRepository.findBySetId(1));
+        check("QuizQuestionRepository.findBySetId", () -> quizQuestionRepository.findBySetId(1));
+        check("FlashcardRepository.deleteBySetId", () -> inTransaction(() -> flashcardRepository.deleteBySetId(1)));
+        check("QuizQuestionRepository.deleteBySetId",
+                () -> inTransaction(() -> quizQuestionRepository.deleteBySetId(1)));
+        check("QuizAttemptRepository.findBySetId", () -> quizAttemptRepository.findBySetId(1));
+        check("QuizAttemptRepository.findBestAttemptPerUser", () -> quizAttemptRepository.findBestAttemptPerUser(1));
+        check("XpEventRepository.findByUserId", () -> xpEventRepository.findByUserId(1));
+        check("XpEventRepository.findSetEventsForDay", () -> xpEventRepository.findSetEventsForDay(1, "2026-01-01"));
+        check("XpEventRepository.sumXpByUserSince", () -> xpEventRepository.sumXpByUserSince("2026-01-01"));
+        check("XpEventRepository.sumXpByUserForSubject", () -> xpEventRepository.sumXpByUserForSubject("Math"));
+        check("DailyTaskRepository.findByUserId", () -> dailyTaskRepository.findByUserId(1));
+        check("DailyTaskStatusRepository.findByTaskIdAndDate",
+                () -> dailyTaskStatusRepository.findByTaskIdAndDate(1, "2026-01-01"));
+        check("DailyTaskStatusRepository.findByTaskId", () -> dailyTaskStatusRepository.findByTaskId(1));
+        check("DailyTaskStatusRepository.findByDate", () -> dailyTaskStatusRepository.findByDate("2026-01-01"));
+
+        assertTrue(explained >= 25, "Only " + explained + " queries were captured");
+        assertTrue(problems.isEmpty(), "Queries without a usable index:\n" + String.join("\n", problems));
+    }
+
+    // Run the call and explain each query it sent
+    private void check(String name, Runnable call) {
+        captured.clear();
+        call.run();
+        for (String sql : new ArrayList<>(captured)) {
+            String verb = sql.trim().toLowerCase();
+            if (!verb.startsWith("select") && !verb.startsWith("delete")) {
+                continue;
+            }
+            int params = sql.length() - sql.replace("?", "").length();
+            List<String> plan = jdbcTemplate.query("EXPLAIN QUERY PLAN " + sql,
+                    (rs, rowNum) -> rs.getString("detail"), new Object[params]);
+            explained++;
+            for (String step : plan) {
+                boolean tableScan = step.startsWith("SCAN ") && !step.startsWith("SCAN (subquery");
+                boolean tempTree = step.contains("TEMP B-TREE")
+                        && !(step.contains("FOR GROUP BY") && GROUPED_RANGE_READS.contains(name));
+                if (tableScan || tempTree) {
+                    problems.add(name + ": " + step + "\n    in " + sql);
+                }
+            }
+        }
+    }
+
+    private void inTransaction(Runnable work) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> work.run());
+    }
+}
@@ -0,0 +1,23 @@
+package com.mavpal.dto;
+
+/**
+ * One member of a ranked board: who, and their score on that board.
+ */
+public class ScoredMember {
+    private final Integer memberId;
+    private final int score;
+
+    public ScoredMember(Integer memberId, int score) {
+        this.memberId = memberId;
+        this.score = score;
+    }
+
+    // Getters
+    public Integer getMemberId() {
+        return memberId;
+    }
+
+    public int getScore() {
+        return score;
+    }
+}
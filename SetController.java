@@ -2,6 +2,8 @@ package com.mavpal.controller;
 
 import com.mavpal.entity.Set;
 import com.mavpal.repository.SetRepository;
+import com.mavpal.service.QuizService;
+import com.mavpal.service.SetLeaderboardService;
 import com.mavpal.service.XPService;
 import com.mavpal.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
@@ -29,14 +32,20 @@ public class SetController {
     @Autowired
     private XPService xpService;
 
+    @Autowired
+    private SetLeaderboardService setLeaderboardService;
+
+    @Autowired
+    private QuizService quizService;
+
     private Integer getUserIdFromToken(String authHeader) {
         String token = authHeader.substring(7);
         return jwtUtil.extractUserId(token);
     }
 
     @PostMapping
-    public ResponseEntity<?> createSet(@RequestBody Map<String, Object> request, 
-                                       @RequestHeader("Authorization") String authHeader) {
+    public CompletableFuture<ResponseEntity<?>> createSet(@RequestBody Map<String, Object> request,
+                                                          @RequestHeader("Authorization") String authHeader) {
         Integer userId = getUserIdFromToken(authHeader);
 
         Set set = new Set();
@@ -50,9 +59,6 @@ public class SetController {
 
         set = setRepository.save(set);
 
-        // Award XP for creating a set (100 XP)
-        int xpEarned = xpService.awardXp(userId, 100, "set_created", set.getId());
-
         Map<String, Object> response = new HashMap<>();
         response.put("id", set.getId());
         response.put("title", set.getTitle());
@@ -62,9 +68,13 @@ public class SetController {
         response.put("type", set.getType());
         response.put("createdBy", set.getCreatedBy());
         response.put("createdAt", set.getCreatedAt());
-        response.put("xpEarned", xpEarned);
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        // Award XP for creating a set (100 XP)
+        return xpService.awardXp(userId, 100, "set_created", set.getId())
+                .thenApply(award -> {
+                    response.put("xpEarned", award.getXpEarned());
+                    return ResponseEntity.status(HttpStatus.CREATED).body(response);
+                });
     }
 
     @GetMapping
@@ -156,6 +166,7 @@ public class SetController {
         }
 
         set = setRepository.save(set);
+        setLeaderboardService.evictSet(setId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("id", set.getId());
@@ -188,6 +199,8 @@ public class SetController {
         }
 
         setRepository.delete(set);
+        setLeaderboardService.evictSet(setId);
+        quizService.invalidateQuestions(setId);
         return ResponseEntity.ok(Map.of("message", "Set deleted successfully"));
     }
 }
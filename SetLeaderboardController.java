@@ -0,0 +1,32 @@
+package com.mavpal.controller;
+
+import com.mavpal.service.SetLeaderboardService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/sets/{setId}/leaderboard")
+@CrossOrigin(origins = "http://localhost:3000")
+public class SetLeaderboardController {
+
+    @Autowired
+    private SetLeaderboardService setLeaderboardService;
+
+    @GetMapping
+    public ResponseEntity<?> getSetLeaderboard(@PathVariable Integer setId,
+                                                @RequestParam(defaultValue = "50") int top) {
+        List<Map<String, Object>> entries = setLeaderboardService.getSetLeaderboard(setId, top);
+
+        if (entries == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Set not found"));
+        }
+
+        return ResponseEntity.ok(Map.of("setId", setId, "entries", entries));
+    }
+}
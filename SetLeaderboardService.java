@@ -0,0 +1,229 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.LeaderboardEntry;
+import com.mavpal.entity.Set;
+import com.mavpal.entity.XpEvent;
+import com.mavpal.repository.QuizAttemptRepository;
+import com.mavpal.repository.SetRepository;
+import com.mavpal.repository.XpEventRepository;
+import com.mavpal.util.TransactionHooks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Per-set quiz leaderboards (best score, then fastest time) and per-subject
+ * XP leaderboards.
+ *
+ * Each board is built with one aggregate query the first time it is read and
+ * is then kept current from QuizService.gradeQuiz and XPService.awardXp, so
+ * reads never touch quiz_attempts or xp_events.
+ */
+@Service
+public class SetLeaderboardService {
+
+    @Autowired
+    private QuizAttemptRepository quizAttemptRepository;
+
+    @Autowired
+    private XpEventRepository xpEventRepository;
+
+    @Autowired
+    private SetRepository setRepository;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final class SetScore {
+        final Integer userId;
+        final double score;
+        final int durationMs;
+
+        SetScore(Integer userId, double score, Integer durationMs) {
+            this.userId = userId;
+            this.score = score;
+            this.durationMs = durationMs != null ? durationMs : Integer.MAX_VALUE;
+        }
+    }
+
+    private static final Comparator<SetScore> SET_ORDER = Comparator
+            .comparingDouble((SetScore s) -> -s.score)
+            .thenComparingInt(s -> s.durationMs)
+            .thenComparing(s -> s.userId);
+
+    private static final class SetBoard {
+        private final TreeSet<SetScore> ranking = new TreeSet<>(SET_ORDER);
+        private final Map<Integer, SetScore> bestByUser = new HashMap<>();
+
+        // Keeping the best attempt is idempotent, so replaying one is harmless
+        synchronized void record(SetScore attempt) {
+            SetScore current = bestByUser.get(attempt.userId);
+            if (current != null) {
+                if (SET_ORDER.compare(attempt, current) >= 0) {
+                    return;
+                }
+                ranking.remove(current);
+            }
+            ranking.add(attempt);
+            bestByUser.put(attempt.userId, attempt);
+        }
+
+        synchronized List<SetScore> top(int limit) {
+            return ranking.stream().limit(limit).collect(Collectors.toList());
+        }
+    }
+
+    private static final class SubjectBoard {
+        final LeaderboardIndex index = new LeaderboardIndex();
+        final int loadedUpToEventId;
+
+        SubjectBoard(int loadedUpToEventId) {
+            this.loadedUpToEventId = loadedUpToEventId;
+        }
+    }
+
+    private final Map<Integer, SetBoard> setBoards = new ConcurrentHashMap<>();
+    private final Map<String, SubjectBoard> subjectBoards = new ConcurrentHashMap<>();
+    private final Map<Integer, Optional<String>> subjectBySet = new ConcurrentHashMap<>();
+
+    /**
+     * Record a graded attempt after commit. Boards that have not been loaded
+     * yet are skipped; they will pick the attempt up from the database.
+     */
+    public void onAttemptGraded(Integer setId, Integer userId, double score, Integer durationMs) {
+        SetScore attempt = new SetScore(userId, score, durationMs);
+        TransactionHooks.afterCommit(() -> setBoards.computeIfPresent(setId, (id, board) -> {
+            board.record(attempt);
+            return board;
+        }));
+    }
+
+    /**
+     * Credit the XP in {@code event} to the board of its set's subject. The
+     * event must already have been written by XpEventWriter, which assigns
+     * its id; boards loaded after that id committed already include it and
+     * ignore the update.
+     */
+    public void onXpAwarded(LeaderboardEntry entry, XpEvent event) {
+        Integer sourceSetId = event.getSourceSet();
+        int amount = event.getXpAmount();
+        if (sourceSetId == null || amount == 0) {
+            return;
+        }
+        String subject = subjectOf(sourceSetId);
+        if (subject == null) {
+            return;
+        }
+        TransactionHooks.afterCommit(() -> subjectBoards.computeIfPresent(subject, (key, board) -> {
+            if (event.getId() != null && event.getId() <= board.loadedUpToEventId) {
+                return board;
+            }
+            synchronized (board) {
+                LeaderboardEntry existing = board.index.get(entry.getId());
+                board.index.put(entry.withXp((existing != null ? existing.getXp() : 0) + amount));
+            }
+            return board;
+        }));
+    }
+
+    /**
+     * Forget cached state for a set that was edited or deleted.
+     */
+    public void evictSet(Integer setId) {
+        setBoards.remove(setId);
+        subjectBySet.remove(setId);
+    }
+
+    /**
+     * Best attempts on the set, or null if the set does not exist.
+     */
+    public List<Map<String, Object>> getSetLeaderboard(Integer setId, int top) {
+        SetBoard board = setBoards.computeIfAbsent(setId, this::loadSetBoard);
+        if (board == null) {
+            return null;
+        }
+        List<SetScore> rows = board.top(Math.max(0, Math.min(top, LeaderboardService.MAX_PAGE_SIZE)));
+
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            SetScore row = rows.get(i);
+            LeaderboardEntry user = leaderboardService.getEntry(row.userId);
+            Map<String, Object> map = new HashMap<>();
+            map.put("position", i + 1);
+            map.put("userId", row.userId);
+            map.put("utaId", user != null ? user.getUtaId() : null);
+            map.put("firstName", user != null ? user.getFirstName() : null);
+            map.put("lastName", user != null ? user.getLastName() : null);
+            map.put("bestScore", row.score);
+            map.put("bestDurationMs", row.durationMs != Integer.MAX_VALUE ? row.durationMs : null);
+            result.add(map);
+        }
+        return result;
+    }
+
+    public List<Map<String, Object>> getSubjectLeaderboard(String subject, int top) {
+        SubjectBoard board = subjectBoards.computeIfAbsent(subject, this::loadSubjectBoard);
+        return board.index.top(Math.max(0, Math.min(top, LeaderboardService.MAX_PAGE_SIZE))).stream()
+                .map(LeaderboardEntry::toMap)
+                .collect(Collectors.toList());
+    }
+
+    private SetBoard loadSetBoard(Integer setId) {
+        if (!setRepository.existsById(setId)) {
+            return null; // Nothing is cached for unknown ids
+        }
+        SetBoard board = new SetBoard();
+        for (Object[] row : quizAttemptRepository.findBestAttemptPerUser(setId)) {
+            board.record(new SetScore(((Number) row[0]).intValue(),
+                    row[1] != null ? ((Number) row[1]).doubleValue() : 0.0,
+                    row[2] != null ? ((Number) row[2]).intValue() : null));
+        }
+        return board;
+    }
+
+    private SubjectBoard loadSubjectBoard(String subject) {
+        // Aggregate and read the last event id from one snapshot. Ids follow commit
+        // order, so every later award is either in the aggregate or has a higher id
+        // and is applied incrementally, never both
+        List<Object[]> totals = new ArrayList<>();
+        TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+        snapshot.setReadOnly(true);
+        int writtenUpTo = snapshot.execute(status -> {
+            totals.addAll(xpEventRepository.sumXpByUserForSubject(subject));
+            return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM xp_events", Integer.class);
+        });
+        SubjectBoard board = new SubjectBoard(writtenUpTo);
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        for (Object[] row : totals) {
+            LeaderboardEntry user = leaderboardService.getEntry(((Number) row[0]).intValue());
+            if (user != null) {
+                entries.add(user.withXp(((Number) row[1]).intValue()));
+            }
+        }
+        board.index.reset(entries);
+        return board;
+    }
+
+    private String subjectOf(Integer setId) {
+        return subjectBySet.computeIfAbsent(setId, id -> setRepository.findById(id).map(Set::getSubject))
+                .orElse(null);
+    }
+}
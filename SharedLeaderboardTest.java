@@ -0,0 +1,194 @@
+package com.mavpal.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mavpal.MavPalApplication;
+import com.mavpal.entity.User;
+import com.mavpal.repository.UserRepository;
+import com.mavpal.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Two application instances on one database and one shared rank store
+ * must serve the same leaderboard, including XP, levels and names that
+ * only the other instance wrote.
+ *
+ * The first instance runs in the test JVM; the second is a separate java
+ * process on the same classpath, so the two share only the SQLite files
+ * and really lock them against each other. Both are compared through
+ * their HTTP APIs.
+ */
+class SharedLeaderboardTest {
+
+    private static final String DB = "build/shared-leaderboard-test.db";
+    private static final String RANKS_DB = "build/shared-leaderboard-ranks.db";
+    private static final Path SECOND_LOG = Path.of("build/shared-leaderboard-second.log");
+    private static final long STARTUP_TIMEOUT_MS = 120_000;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ConfigurableApplicationContext first;
+    private Process second;
+    private int firstPort;
+    private int secondPort;
+
+    @BeforeEach
+    void startFirst() {
+        new File(DB).delete();
+        new File(RANKS_DB).delete();
+        first = new SpringApplication(MavPalApplication.class).run(args(0).toArray(new String[0]));
+        firstPort = Integer.parseInt(first.getEnvironment().getProperty("local.server.port"));
+    }
+
+    @AfterEach
+    void stopInstances() throws InterruptedException {
+        if (second != null) {
+            second.destroy();
+            if (!second.waitFor(30, TimeUnit.SECONDS)) {
+                second.destroyForcibly();
+            }
+        }
+        first.close();
+    }
+
+    @Test
+    void instancesAgreeOnPages() throws Exception {
+        UserRepository users = first.getBean(UserRepository.class);
+        User alice = users.save(new User("1000000001", "alice@mavs.uta.edu", "Alice", "Adams", "hash"));
+        User bob = users.save(new User("1000000002", "bob@mavs.uta.edu", "Bob", "Brown", "hash"));
+        XPService firstXp = first.getBean(XPService.class);
+        firstXp.awardXp(alice.getId(), 50, "daily_bonus", null).join();
+        firstXp.awardXp(bob.getId(), 20, "daily_bonus", null).join();
+
+        JwtUtil jwtUtil = first.getBean(JwtUtil.class);
+        String aliceToken = jwtUtil.generateToken(alice.getId(), alice.getUtaId());
+        startSecond();
+
+        // The second instance caches both profiles here
+        assertEquals(get(firstPort, "/api/leaderboard/page?limit=10", aliceToken),
+                get(secondPort, "/api/leaderboard/page?limit=10", aliceToken));
+
+        // Bob levels up and renames himself, all on the first instance
+        firstXp.awardXp(bob.getId(), 400, "daily_bonus", null).join();
+        bob = users.findById(bob.getId()).orElseThrow();
+        bob.setFirstName("Robert");
+        users.save(bob);
+        first.getBean(LeaderboardService.class).onUserUpdated(bob);
+
+        Map<String, Object> page = get(secondPort, "/api/leaderboard/page?limit=10", aliceToken);
+        assertEquals(get(firstPort, "/api/leaderboard/page?limit=10", aliceToken), page);
+        Map<String, Object> top = topOf(page);
+        assertEquals(bob.getId(), top.get("id"));
+        assertEquals("Robert", top.get("firstName"));
+        assertEquals(420, top.get("xp"));
+        assertEquals(first.getBean(LevelCurve.class).levelFor(420), top.get("level"));
+
+        // Alice overtakes him through the second instance
+        Map<String, Object> award = post(secondPort, "/api/users/" + alice.getUtaId() + "/xp/events",
+                aliceToken, Map.of("eventType", "daily_bonus", "xpAmount", 500));
+        assertEquals(550, award.get("newXpTotal"));
+        assertEquals(550, first.getBean(JdbcTemplate.class)
+                .queryForObject("SELECT xp FROM users WHERE id = ?", Integer.class, alice.getId()));
+
+        page = get(firstPort, "/api/leaderboard/page?limit=10", aliceToken);
+        assertEquals(get(secondPort, "/api/leaderboard/page?limit=10", aliceToken), page);
+        assertEquals(alice.getId(), topOf(page).get("id"));
+        assertEquals(550, topOf(page).get("xp"));
+        assertEquals(get(firstPort, "/api/leaderboard?top=10", aliceToken),
+                get(secondPort, "/api/leaderboard?top=10", aliceToken));
+    }
+
+    private void startSecond() throws IOException, InterruptedException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            secondPort = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                MavPalApplication.class.getName()));
+        command.addAll(args(secondPort));
+        second = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(SECOND_LOG.toFile())
+                .start();
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (!second.isAlive()) {
+                fail("Second instance exited with " + second.exitValue() + ":\n" + Files.readString(SECOND_LOG));
+            }
+            try {
+                if (send(secondPort, HttpRequest.newBuilder().GET(), "/api/levels", null).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(200);
+        }
+        fail("Second instance did not start within " + STARTUP_TIMEOUT_MS + " ms:\n" + Files.readString(SECOND_LOG));
+    }
+
+    private static List<String> args(int port) {
+        return List.of(
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:sqlite:" + DB,
+                "--mavpal.leaderboard.store=sqlite",
+                "--mavpal.leaderboard.sqlite-url=jdbc:sqlite:" + RANKS_DB);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> topOf(Map<String, Object> page) {
+        return ((List<Map<String, Object>>) page.get("users")).get(0);
+    }
+
+    private Map<String, Object> get(int port, String path, String token) throws IOException, InterruptedException {
+        return json(send(port, HttpRequest.newBuilder().GET(), path, token));
+    }
+
+    private Map<String, Object> post(int port, String path, String token, Map<String, Object> body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        return json(send(port, request, path, token));
+    }
+
+    private HttpResponse<String> send(int port, HttpRequest.Builder request, String path, String token)
+            throws IOException, InterruptedException {
+        request.uri(URI.create("http://localhost:" + port + path)).timeout(Duration.ofSeconds(30));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Map<String, Object> json(HttpResponse<String> response) throws IOException {
+        assertEquals(200, response.statusCode(), response.uri() + ": " + response.body());
+        return objectMapper.readValue(response.body(), new TypeReference<>() {});
+    }
+}
@@ -0,0 +1,148 @@
+package com.mavpal.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Accepted answers for one short-answer question, compiled for grading.
+ *
+ * Answers are compared in normalized form (see {@link #normalize}), first
+ * by a hash lookup and then, for answers long enough to allow it, within a
+ * small edit distance so minor typos still count. Answers containing
+ * digits must match exactly, so "1945" never accepts "1946".
+ */
+public final class ShortAnswerMatcher {
+
+    private final Set<String> exact;
+    private final String[] fuzzyForms;
+    private final int[] fuzzyDistances;
+
+    private ShortAnswerMatcher(Set<String> exact, String[] fuzzyForms, int[] fuzzyDistances) {
+        this.exact = exact;
+        this.fuzzyForms = fuzzyForms;
+        this.fuzzyDistances = fuzzyDistances;
+    }
+
+    /**
+     * Null if none of {@code acceptedAnswers} has anything left once
+     * normalized, since no answer could match.
+     */
+    public static ShortAnswerMatcher compile(List<String> acceptedAnswers) {
+        Set<String> exact = new HashSet<>();
+        List<String> fuzzyForms = new ArrayList<>();
+        List<Integer> fuzzyDistances = new ArrayList<>();
+        for (String accepted : acceptedAnswers) {
+            String form = normalize(accepted);
+            if (form.isEmpty() || !exact.add(form)) {
+                continue;
+            }
+            int distance = maxDistance(form);
+            if (distance > 0) {
+                fuzzyForms.add(form);
+                fuzzyDistances.add(distance);
+            }
+        }
+        if (exact.isEmpty()) {
+            return null;
+        }
+        return new ShortAnswerMatcher(Set.copyOf(exact), fuzzyForms.toArray(new String[0]),
+                fuzzyDistances.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    public boolean matches(String answer) {
+        String form = normalize(answer);
+        if (exact.contains(form)) {
+            return true;
+        }
+        for (int i = 0; i < fuzzyForms.length; i++) {
+            if (withinDistance(fuzzyForms[i], form, fuzzyDistances[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compatibility-decomposed with accents and other combining marks
+     * dropped, case-folded, with whitespace, dashes and underscores as word
+     * breaks and other punctuation and symbols removed, and words separated
+     * by single spaces. "  Café-au-Lait! " becomes "cafe au lait".
+     */
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder form = new StringBuilder(decomposed.length());
+        boolean pendingBreak = false;
+        for (int i = 0; i < decomposed.length(); ) {
+            int c = decomposed.codePointAt(i);
+            i += Character.charCount(c);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingBreak && form.length() > 0) {
+                    form.append(' ');
+                }
+                pendingBreak = false;
+                form.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c)));
+            } else if (Character.isWhitespace(c) || c == '_'
+                    || Character.getType(c) == Character.DASH_PUNCTUATION) {
+                pendingBreak = true;
+            } // else a combining mark, other punctuation or a symbol: dropped
+        }
+        return form.toString();
+    }
+
+    // Typos allowed in an answer: none for short words or anything with a
+    // number in it, one up to 7 characters, two beyond
+    private static int maxDistance(String form) {
+        for (int i = 0; i < form.length(); i++) {
+            if (Character.isDigit(form.charAt(i))) {
+                return 0;
+            }
+        }
+        return form.length() <= 3 ? 0 : form.length() <= 7 ? 1 : 2;
+    }
+
+    /**
+     * Whether the Levenshtein distance between {@code a} and {@code b} is at
+     * most {@code k}. Only the diagonal band of width 2k + 1 is computed and
+     * the check stops as soon as a whole row exceeds k, so the cost is
+     * O(k * length) rather than O(length squared).
+     */
+    static boolean withinDistance(String a, String b, int k) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > k) {
+            return false;
+        }
+        int outside = k + 1;
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j <= k ? j : outside;
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - k);
+            int to = Math.min(m, i + k);
+            current[from - 1] = from == 1 && i <= k ? i : outside;
+            int rowMin = current[from - 1];
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, outside);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < m) {
+                current[to + 1] = outside;
+            }
+            if (rowMin > k) {
+                return false;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m] <= k;
+    }
+}
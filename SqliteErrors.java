@@ -0,0 +1,32 @@
+package com.mavpal.util;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+
+public final class SqliteErrors {
+
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    private SqliteErrors() {}
+
+    /**
+     * Whether the database rejected a row, so retrying it would fail the
+     * same way. The SQLite driver reports no SQLState, so Spring cannot
+     * always translate this into DataIntegrityViolationException; go by
+     * SQLite's primary result code instead.
+     */
+    public static boolean isConstraintViolation(DataAccessException e) {
+        if (e instanceof DataIntegrityViolationException) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException
+                    && (((SQLException) cause).getErrorCode() & 0xff) == SQLITE_CONSTRAINT) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
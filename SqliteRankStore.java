@@ -0,0 +1,213 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.ScoredMember;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RankStore kept in its own SQLite file, so several application instances
+ * on one machine see the same boards. A stand-in for a networked sorted-set
+ * store: every call is one or a few indexed statements, and writes run in
+ * BEGIN IMMEDIATE transactions so concurrent processes queue on the file lock
+ * (up to the busy timeout) instead of failing.
+ *
+ * Deep rangeByRank calls use OFFSET and cost O(position); keyset reads via
+ * rangeAfter do not.
+ */
+@Component
+@ConditionalOnProperty(name = "mavpal.leaderboard.store", havingValue = "sqlite")
+public class SqliteRankStore implements RankStore {
+
+    private static final int POOL_SIZE = 4;
+    private static final String BUSY_TIMEOUT_MS = "5000";
+
+    @Value("${mavpal.leaderboard.sqlite-url:jdbc:sqlite:./mavpal-ranks.db}")
+    private String url;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate transactions;
+
+    private static final RowMapper<ScoredMember> MEMBER =
+            (rs, rowNum) -> new ScoredMember(rs.getInt("member_id"), rs.getInt("score"));
+
+    @PostConstruct
+    public void open() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setDriverClassName("org.sqlite.JDBC");
+        config.setMaximumPoolSize(POOL_SIZE);
+        config.setPoolName("rank-store");
+        config.addDataSourceProperty("journal_mode", "WAL");
+        config.addDataSourceProperty("busy_timeout", BUSY_TIMEOUT_MS);
+        config.addDataSourceProperty("transaction_mode", "IMMEDIATE");
+        dataSource = new HikariDataSource(config);
+        jdbc = new JdbcTemplate(dataSource);
+        transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        jdbc.execute("CREATE TABLE IF NOT EXISTS rank_scores ("
+                + "board TEXT NOT NULL, "
+                + "member_id INTEGER NOT NULL, "
+                + "score INTEGER NOT NULL, "
+                + "PRIMARY KEY (board, member_id))");
+        jdbc.execute("CREATE INDEX IF NOT EXISTS idx_rank_scores_order "
+                + "ON rank_scores(board, score DESC, member_id)");
+        // One row per board ever written; kept after deleteBoard so versions are never reused
+        jdbc.execute("CREATE TABLE IF NOT EXISTS rank_boards ("
+                + "board TEXT PRIMARY KEY, "
+                + "version INTEGER NOT NULL)");
+    }
+
+    @PreDestroy
+    public void close() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public void replaceBoard(String board, Map<Integer, Integer> scores) {
+        List<Object[]> rows = new ArrayList<>(scores.size());
+        scores.forEach((memberId, score) -> rows.add(new Object[]{board, memberId, score}));
+        transactions.executeWithoutResult(status -> {
+            jdbc.update("DELETE FROM rank_scores WHERE board = ?", board);
+            jdbc.batchUpdate("INSERT INTO rank_scores (board, member_id, score) VALUES (?, ?, ?)", rows);
+            bumpVersion(board);
+        });
+    }
+
+    @Override
+    public void deleteBoard(String board) {
+        transactions.executeWithoutResult(status -> {
+            jdbc.update("DELETE FROM rank_scores WHERE board = ?", board);
+            bumpVersion(board);
+        });
+    }
+
+    @Override
+    public void setScore(String board, Integer memberId, int score) {
+        transactions.executeWithoutResult(status -> write(board, memberId, score, getScore(board, memberId)));
+    }
+
+    @Override
+    public int incrementScore(String board, Integer memberId, int delta) {
+        return transactions.execute(status -> {
+            Integer old = getScore(board, memberId);
+            int score = (old != null ? old : 0) + delta;
+            write(board, memberId, score, old);
+            return score;
+        });
+    }
+
+    @Override
+    public Integer getScore(String board, Integer memberId) {
+        List<Integer> scores = jdbc.queryForList(
+                "SELECT score FROM rank_scores WHERE board = ? AND member_id = ?",
+                Integer.class, board, memberId);
+        return scores.isEmpty() ? null : scores.get(0);
+    }
+
+    @Override
+    public Integer rank(String board, Integer memberId) {
+        Integer score = getScore(board, memberId);
+        if (score == null) {
+            return null;
+        }
+        Integer ahead = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM rank_scores WHERE board = ? "
+                        + "AND (score > ? OR (score = ? AND member_id < ?))",
+                Integer.class, board, score, score, memberId);
+        return ahead + 1;
+    }
+
+    @Override
+    public long countAbove(String board, int score) {
+        Long count = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM rank_scores WHERE board = ? AND score > ?",
+                Long.class, board, score);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public List<ScoredMember> rangeByRank(String board, int fromRank, int limit) {
+        return jdbc.query("SELECT member_id, score FROM rank_scores WHERE board = ? "
+                        + "ORDER BY score DESC, member_id ASC LIMIT ? OFFSET ?",
+                MEMBER, board, limit, Math.max(0, fromRank - 1));
+    }
+
+    @Override
+    public List<ScoredMember> rangeAfter(String board, int score, Integer memberId, int limit) {
+        return jdbc.query("SELECT member_id, score FROM rank_scores WHERE board = ? "
+                        + "AND (score < ? OR (score = ? AND member_id > ?)) "
+                        + "ORDER BY score DESC, member_id ASC LIMIT ?",
+                MEMBER, board, score, score, memberId, limit);
+    }
+
+    @Override
+    public List<ScoredMember> rangeAround(String board, Integer memberId, int radius) {
+        Integer position = rank(board, memberId);
+        if (position == null) {
+            return new ArrayList<>();
+        }
+        int start = Math.max(1, position - radius);
+        return rangeByRank(board, start, position - start + radius + 1);
+    }
+
+    @Override
+    public long topVersion(String board) {
+        List<Long> versions = jdbc.queryForList(
+                "SELECT version FROM rank_boards WHERE board = ?", Long.class, board);
+        if (!versions.isEmpty()) {
+            return versions.get(0);
+        }
+        return transactions.execute(status -> bumpVersion(board));
+    }
+
+    /**
+     * Store the new score and bump the board version if the member was or is
+     * now within the tracked top rows. Must run inside a write transaction.
+     */
+    private void write(String board, Integer memberId, int score, Integer oldScore) {
+        // Score of the last tracked row before this write; null while the board is smaller
+        List<Integer> cutoff = jdbc.queryForList("SELECT score FROM rank_scores WHERE board = ? "
+                        + "ORDER BY score DESC, member_id ASC LIMIT 1 OFFSET ?",
+                Integer.class, board, LeaderboardIndex.TRACKED_TOP - 1);
+
+        jdbc.update("INSERT INTO rank_scores (board, member_id, score) VALUES (?, ?, ?) "
+                + "ON CONFLICT(board, member_id) DO UPDATE SET score = excluded.score",
+                board, memberId, score);
+
+        if (cutoff.isEmpty() || score >= cutoff.get(0)
+                || (oldScore != null && oldScore >= cutoff.get(0))) {
+            bumpVersion(board);
+        }
+    }
+
+    /**
+     * Give the board a version higher than any board has had so far.
+     */
+    private long bumpVersion(String board) {
+        jdbc.update("INSERT INTO rank_boards (board, version) "
+                + "VALUES (?, (SELECT COALESCE(MAX(version), 0) + 1 FROM rank_boards)) "
+                + "ON CONFLICT(board) DO UPDATE SET version = excluded.version", board);
+        return jdbc.queryForObject("SELECT version FROM rank_boards WHERE board = ?", Long.class, board);
+    }
+}
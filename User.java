@@ -25,10 +25,12 @@ public class User {
     @Column(name = "password_hash", nullable = false)
     private String passwordHash;
 
-    @Column(nullable = false)
+    // Written only by XPService's in-place increment, so saving a stale User
+    // (profile edit, login) can never overwrite an award made in between
+    @Column(nullable = false, updatable = false)
     private Integer xp = 0;
 
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer level = 1;
 
     @Column(name = "created_at")
@@ -1,40 +1,71 @@
 package com.mavpal.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mavpal.dto.XpAward;
 import com.mavpal.entity.User;
-import com.mavpal.entity.XpEvent;
 import com.mavpal.entity.Set;
 import com.mavpal.repository.UserRepository;
-import com.mavpal.repository.XpEventRepository;
 import com.mavpal.repository.SetRepository;
 import com.mavpal.repository.DailyTaskRepository;
+import com.mavpal.service.IdempotencyService;
+import com.mavpal.service.LeaderboardWindow;
+import com.mavpal.service.LevelCurve;
+import com.mavpal.service.QuizProgressService;
+import com.mavpal.service.XpAwardLanes;
+import com.mavpal.service.XpHistoryService;
 import com.mavpal.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/users")
 @CrossOrigin(origins = "http://localhost:3000")
 public class UserController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private XpEventRepository xpEventRepository;
+    private com.mavpal.service.XPService xpService;
 
     @Autowired
-    private com.mavpal.service.XPService xpService;
+    private XpAwardLanes xpAwardLanes;
 
     @Autowired
     private com.mavpal.service.DefaultSetService defaultSetService;
 
+    @Autowired
+    private com.mavpal.service.LeaderboardService leaderboardService;
+
+    @Autowired
+    private XpHistoryService xpHistoryService;
+
+    @Autowired
+    private QuizProgressService quizProgressService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LevelCurve levelCurve;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @Autowired
     private SetRepository setRepository;
 
@@ -67,14 +98,80 @@ public class UserController {
         userData.put("lastName", user.getLastName());
         userData.put("xp", user.getXp());
         userData.put("level", user.getLevel());
+        userData.put("levelProgress", levelCurve.progress(user.getXp()));
         userData.put("createdAt", user.getCreatedAt());
         userData.put("lastLogin", user.getLastLogin());
 
         return ResponseEntity.ok(userData);
     }
 
+    /**
+     * The user's best score on every quiz set they have attempted, with
+     * totals across all of them.
+     */
+    @GetMapping("/{utaId}/progress")
+    public ResponseEntity<?> getProgress(@PathVariable String utaId,
+                                         @RequestHeader("Authorization") String authHeader) {
+        Integer userId = getUserIdFromToken(authHeader);
+        User user = userRepository.findByUtaId(utaId)
+                .orElse(null);
+
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "User not found"));
+        }
+
+        if (!user.getId().equals(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not authorized"));
+        }
+
+        return ResponseEntity.ok(quizProgressService.getProgress(userId));
+    }
+
+    /**
+     * The user's quiz attempts across all sets, newest first, one page at a
+     * time.
+     */
+    @GetMapping("/{utaId}/attempts")
+    public ResponseEntity<?> getAttempts(@PathVariable String utaId,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit,
+                                         @RequestHeader("Authorization") String authHeader) {
+        Integer userId = getUserIdFromToken(authHeader);
+        User user = userRepository.findByUtaId(utaId)
+                .orElse(null);
+
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "User not found"));
+        }
+
+        if (!user.getId().equals(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not authorized"));
+        }
+
+        try {
+            return ResponseEntity.ok(quizProgressService.getAttempts(userId, null, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid cursor"));
+        }
+    }
+
+    /**
+     * Raw XP events, newest first, one page at a time. {@code eventType},
+     * {@code from} and {@code to} (inclusive, YYYY-MM-DD) narrow the page;
+     * from = to drills into a single day of a history chart.
+     */
     @GetMapping("/{utaId}/xp")
     public ResponseEntity<?> getXpHistory(@PathVariable String utaId,
+                                         @RequestParam(required = false) String eventType,
+                                         @RequestParam(required = false) String from,
+                                         @RequestParam(required = false) String to,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "50") int limit,
                                          @RequestHeader("Authorization") String authHeader) {
         Integer userId = getUserIdFromToken(authHeader);
         User user = userRepository.findByUtaId(utaId)
@@ -90,30 +187,85 @@ public class UserController {
                     .body(Map.of("error", "Not authorized"));
         }
 
-        List<XpEvent> events = xpEventRepository.findByUserId(userId);
-        List<Map<String, Object>> eventList = events.stream().map(event -> {
-            Map<String, Object> map = new HashMap<>();
-            map.put("id", event.getId());
-            map.put("eventType", event.getEventType());
-            map.put("xpAmount", event.getXpAmount());
-            map.put("sourceSet", event.getSourceSet());
-            map.put("createdAt", event.getCreatedAt());
-            return map;
-        }).collect(Collectors.toList());
+        LocalDate fromDay;
+        LocalDate toDay;
+        try {
+            fromDay = from != null ? LocalDate.parse(from) : null;
+            toDay = to != null ? LocalDate.parse(to) : null;
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "from and to must be YYYY-MM-DD"));
+        }
 
-        Map<String, Object> response = new HashMap<>();
+        Map<String, Object> response;
+        try {
+            response = xpHistoryService.getEvents(userId, eventType, fromDay, toDay, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid cursor"));
+        }
         response.put("userId", userId);
         response.put("currentXp", user.getXp());
         response.put("currentLevel", user.getLevel());
-        response.put("events", eventList);
 
         return ResponseEntity.ok(response);
     }
 
-    @PostMapping("/{utaId}/xp/events")
-    public ResponseEntity<?> createXpEvent(@PathVariable String utaId,
-                                           @RequestBody Map<String, Object> request,
-                                           @RequestHeader("Authorization") String authHeader) {
+    /**
+     * Every matching XP event as newline-delimited JSON, for clients that
+     * send {@code Accept: application/x-ndjson}. Takes the same filters as
+     * the paged endpoint.
+     */
+    @GetMapping(value = "/{utaId}/xp", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamXpHistory(@PathVariable String utaId,
+                                                                 @RequestParam(required = false) String eventType,
+                                                                 @RequestParam(required = false) String from,
+                                                                 @RequestParam(required = false) String to,
+                                                                 @RequestHeader("Authorization") String authHeader) {
+        Integer userId = getUserIdFromToken(authHeader);
+        User user = userRepository.findByUtaId(utaId)
+                .orElse(null);
+
+        if (user == null) {
+            return streamError(HttpStatus.NOT_FOUND, "User not found");
+        }
+
+        if (!user.getId().equals(userId)) {
+            return streamError(HttpStatus.FORBIDDEN, "Not authorized");
+        }
+
+        LocalDate fromDay;
+        LocalDate toDay;
+        try {
+            fromDay = from != null ? LocalDate.parse(from) : null;
+            toDay = to != null ? LocalDate.parse(to) : null;
+        } catch (DateTimeParseException e) {
+            return streamError(HttpStatus.BAD_REQUEST, "from and to must be YYYY-MM-DD");
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(out -> xpHistoryService.streamEvents(userId, eventType, fromDay, toDay, out));
+    }
+
+    // A streaming handler can only return a stream, so errors are written as one
+    private ResponseEntity<StreamingResponseBody> streamError(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, Map.of("error", message)));
+    }
+
+    /**
+     * XP earned per day, week or month between {@code from} and {@code to}
+     * (inclusive, YYYY-MM-DD). Defaults to the last 30 days, 12 weeks or 12
+     * months ending today.
+     */
+    @GetMapping("/{utaId}/xp/history")
+    public ResponseEntity<?> getXpChart(@PathVariable String utaId,
+                                        @RequestParam(defaultValue = "day") String bucket,
+                                        @RequestParam(required = false) String from,
+                                        @RequestParam(required = false) String to,
+                                        @RequestHeader("Authorization") String authHeader) {
         Integer userId = getUserIdFromToken(authHeader);
         User user = userRepository.findByUtaId(utaId)
                 .orElse(null);
@@ -128,27 +280,104 @@ public class UserController {
                     .body(Map.of("error", "Not authorized"));
         }
 
+        LeaderboardWindow window;
+        LocalDate toDay;
+        LocalDate fromDay;
+        try {
+            window = LeaderboardWindow.fromParam(bucket);
+            if (window == null) {
+                throw new IllegalArgumentException("bucket");
+            }
+            toDay = to != null ? LocalDate.parse(to) : LocalDate.now();
+            if (from != null) {
+                fromDay = LocalDate.parse(from);
+            } else if (window == LeaderboardWindow.MONTH) {
+                fromDay = toDay.minusMonths(11);
+            } else if (window == LeaderboardWindow.WEEK) {
+                fromDay = toDay.minusWeeks(11);
+            } else {
+                fromDay = toDay.minusDays(29);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "bucket must be one of: day, week, month; from and to must be YYYY-MM-DD"));
+        }
+
+        List<Map<String, Object>> points;
+        try {
+            points = xpHistoryService.getHistory(userId, window, fromDay, toDay);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "from must not be after to, and the range must be at most "
+                            + XpHistoryService.MAX_HISTORY_DAYS + " days"));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("userId", userId);
+        response.put("bucket", window.name().toLowerCase());
+        response.put("from", fromDay.toString());
+        response.put("to", toDay.toString());
+        response.put("points", points);
+
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/{utaId}/xp/events")
+    public CompletableFuture<ResponseEntity<?>> createXpEvent(@PathVariable String utaId,
+                                                              @RequestBody Map<String, Object> request,
+                                                              @RequestHeader("Authorization") String authHeader,
+                                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Integer userId = getUserIdFromToken(authHeader);
+        User user = userRepository.findByUtaId(utaId)
+                .orElse(null);
+
+        if (user == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "User not found")));
+        }
+
+        if (!user.getId().equals(userId)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Not authorized")));
+        }
+
         String eventType = (String) request.get("eventType");
         Integer xpAmount = (Integer) request.get("xpAmount");
         Integer sourceSet = request.get("sourceSet") != null ? (Integer) request.get("sourceSet") : null;
 
         if (eventType == null || xpAmount == null) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Missing eventType or xpAmount"));
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("error", "Missing eventType or xpAmount")));
         }
 
-        // Use XPService to award XP (handles level calculation and daily caps)
-        int actualXp = xpService.awardXp(userId, xpAmount, eventType, sourceSet);
-
-        // Get updated user
-        user = userRepository.findById(userId).orElse(null);
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("xpEarned", actualXp);
-        response.put("newXpTotal", user.getXp());
-        response.put("level", user.getLevel());
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > IdempotencyService.MAX_KEY_LENGTH)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("error", "Idempotency-Key must be 1 to " + IdempotencyService.MAX_KEY_LENGTH + " characters")));
+        }
 
-        return ResponseEntity.ok(response);
+        // The key is claimed and the XP awarded in one transaction on the user's lane, so a
+        // retry with the same key gets the first response instead of a second award. The
+        // request thread is released meanwhile.
+        return xpAwardLanes.submit(userId, () -> idempotencyService.execute(userId, "xp_event", idempotencyKey, request, () -> {
+                    // Use XPService to award XP (handles level calculation and daily caps)
+                    XpAward award = xpService.award(userId, xpAmount, eventType, sourceSet);
+
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("xpEarned", award.getXpEarned());
+                    response.put("newXpTotal", award.getNewXpTotal());
+                    response.put("level", award.getLevel());
+                    return response;
+                }))
+                .<ResponseEntity<?>>thenApply(body -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(body))
+                .exceptionally(e -> {
+                    if (e.getCause() instanceof IdempotencyService.KeyReusedException) {
+                        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                                .body(Map.of("error", e.getCause().getMessage()));
+                    }
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
     }
 
     @PatchMapping("/{utaId}")
@@ -177,6 +406,7 @@ public class UserController {
         }
 
         user = userRepository.save(user);
+        leaderboardService.onUserUpdated(user);
 
         Map<String, Object> userData = new HashMap<>();
         userData.put("id", user.getId());
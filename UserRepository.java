@@ -1,10 +1,13 @@
 package com.mavpal.repository;
 
+import com.mavpal.dto.LeaderboardEntry;
 import com.mavpal.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +19,10 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     
     @Query("SELECT COUNT(u) + 1 FROM User u WHERE u.xp > (SELECT u2.xp FROM User u2 WHERE u2.id = ?1)")
     Long getUserRank(Integer userId);
+
+    @Query("SELECT new com.mavpal.dto.LeaderboardEntry(u.id, u.utaId, u.firstName, u.lastName, u.xp, u.level) FROM User u")
+    List<LeaderboardEntry> findAllLeaderboardEntries();
+
+    @Query("SELECT new com.mavpal.dto.LeaderboardEntry(u.id, u.utaId, u.firstName, u.lastName, u.xp, u.level) FROM User u WHERE u.id IN ?1")
+    List<LeaderboardEntry> findLeaderboardEntriesByIds(Collection<Integer> ids);
 }
@@ -1,44 +1,92 @@
 package com.mavpal.service;
 
-import com.mavpal.entity.User;
+import com.mavpal.dto.LeaderboardEntry;
+import com.mavpal.dto.XpAward;
 import com.mavpal.entity.XpEvent;
-import com.mavpal.repository.UserRepository;
-import com.mavpal.repository.XpEventRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class XPService {
 
     @Autowired
-    private UserRepository userRepository;
+    private JdbcTemplate jdbcTemplate;
 
     @Autowired
-    private XpEventRepository xpEventRepository;
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private SetLeaderboardService setLeaderboardService;
+
+    @Autowired
+    private XpEventWriter xpEventWriter;
+
+    @Autowired
+    private DailyCapCounters dailyCapCounters;
+
+    @Autowired
+    private XpHistoryService xpHistoryService;
+
+    @Autowired
+    private LevelCurve levelCurve;
+
+    @Autowired
+    private XpAwardLanes xpAwardLanes;
 
     private static final int DAILY_FULL_XP_LIMIT = 5; // First 5 sets per day give full XP
     private static final double REPEAT_XP_MULTIPLIER = 0.5; // Repeats give 50% XP
 
     public int calculateLevel(int xp) {
-        return (int) Math.floor(Math.sqrt(xp / 100.0)) + 1;
+        return levelCurve.levelFor(xp);
     }
 
-    @Transactional
-    public int awardXp(Integer userId, int baseAmount, String eventType, Integer sourceSetId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    /**
+     * Award XP on the user's lane (see XpAwardLanes); the future completes
+     * once the award has committed. Work that awards XP as part of a larger
+     * transaction submits that whole transaction to the lane and calls
+     * {@link #award} from it instead.
+     *
+     * @throws IllegalStateException if called inside a transaction, which
+     *         holds the write lock the lane would wait for
+     */
+    public CompletableFuture<XpAward> awardXp(Integer userId, int baseAmount, String eventType, Integer sourceSetId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("awardXp called inside a transaction; call award to join it");
+        }
+        return xpAwardLanes.submit(userId, () -> award(userId, baseAmount, eventType, sourceSetId));
+    }
 
+    /**
+     * Award XP and return the user's new totals, so callers need not reload
+     * the user. The XP column is incremented in place rather than read,
+     * changed and saved, so concurrent awards to one user are never lost.
+     */
+    @Transactional
+    public XpAward award(Integer userId, int baseAmount, String eventType, Integer sourceSetId) {
         // Check daily limits
         int actualAmount = calculateActualXpAmount(userId, baseAmount, eventType, sourceSetId);
 
         // Update user XP
-        int newXp = user.getXp() + actualAmount;
-        user.setXp(newXp);
-        user.setLevel(calculateLevel(newXp));
-        userRepository.save(user);
+        List<int[]> updated = jdbcTemplate.query("UPDATE users SET xp = xp + ? WHERE id = ? RETURNING xp, level",
+                (rs, rowNum) -> new int[]{rs.getInt(1), rs.getInt(2)}, actualAmount, userId);
+        if (updated.isEmpty()) {
+            throw new RuntimeException("User not found");
+        }
+        int newXp = updated.get(0)[0];
+        int level = calculateLevel(newXp);
+        if (level != updated.get(0)[1]) {
+            // The transaction holds the write lock, so xp cannot move in between
+            jdbcTemplate.update("UPDATE users SET level = ? WHERE id = ?", level, userId);
+        }
+        LeaderboardEntry entry = leaderboardService.getEntry(userId).withProgress(newXp, level);
+        leaderboardService.onXpAwarded(entry, actualAmount);
 
         // Create XP event
         XpEvent event = new XpEvent();
@@ -47,9 +95,25 @@ public class XPService {
         event.setXpAmount(actualAmount);
         event.setSourceSet(sourceSetId);
         event.setCreatedAt(LocalDate.now().toString());
-        xpEventRepository.save(event);
+        xpEventWriter.write(event);
+        dailyCapCounters.record(event);
+        xpHistoryService.record(event);
+        setLeaderboardService.onXpAwarded(entry, event);
+
+        return new XpAward(actualAmount, newXp, level);
+    }
 
-        return actualAmount;
+    /**
+     * Current totals for a user who was not awarded anything, as an XpAward
+     * with nothing earned.
+     */
+    public XpAward getTotals(Integer userId) {
+        List<XpAward> totals = jdbcTemplate.query("SELECT xp, level FROM users WHERE id = ?",
+                (rs, rowNum) -> new XpAward(0, rs.getInt(1), rs.getInt(2)), userId);
+        if (totals.isEmpty()) {
+            throw new RuntimeException("User not found");
+        }
+        return totals.get(0);
     }
 
     /**
@@ -64,7 +128,9 @@ public class XPService {
         event.setXpAmount(xpAmount);
         event.setSourceSet(sourceSetId);
         event.setCreatedAt(LocalDate.now().toString());
-        xpEventRepository.save(event);
+        xpEventWriter.write(event);
+        dailyCapCounters.record(event);
+        xpHistoryService.record(event);
     }
 
     private int calculateActualXpAmount(Integer userId, int baseAmount, String eventType, Integer sourceSetId) {
@@ -72,15 +138,15 @@ public class XPService {
             return baseAmount; // No daily cap for non-set events (like daily bonus)
         }
 
-        // Count distinct sets completed today
-        Long distinctSetsToday = xpEventRepository.countDistinctSetsToday(userId, eventType);
+        // Count distinct sets completed today (in memory, see DailyCapCounters)
+        int distinctSetsToday = dailyCapCounters.distinctSetsToday(userId, eventType);
         
         if (distinctSetsToday < DAILY_FULL_XP_LIMIT) {
             // First N sets give full XP
             return baseAmount;
         } else {
             // Check if this specific set was already completed today
-            Long eventsForSetToday = xpEventRepository.countEventsForSetToday(userId, sourceSetId);
+            int eventsForSetToday = dailyCapCounters.eventsForSetToday(userId, sourceSetId);
             if (eventsForSetToday == 0) {
                 // New set, but over daily limit - give reduced XP
                 return (int) (baseAmount * REPEAT_XP_MULTIPLIER);
@@ -0,0 +1,30 @@
+package com.mavpal.dto;
+
+/**
+ * Outcome of an XP award: what was earned after daily caps, and the user's
+ * totals right after the award was applied.
+ */
+public class XpAward {
+    private final int xpEarned;
+    private final int newXpTotal;
+    private final int level;
+
+    public XpAward(int xpEarned, int newXpTotal, int level) {
+        this.xpEarned = xpEarned;
+        this.newXpTotal = newXpTotal;
+        this.level = level;
+    }
+
+    // Getters
+    public int getXpEarned() {
+        return xpEarned;
+    }
+
+    public int getNewXpTotal() {
+        return newXpTotal;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
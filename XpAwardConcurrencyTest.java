@@ -0,0 +1,106 @@
+package com.mavpal.service;
+
+import com.mavpal.MavPalApplication;
+import com.mavpal.entity.User;
+import com.mavpal.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads awarding XP at once, to one hot user and to many others,
+ * both through the award lanes and in transactions of their own that
+ * contend for SQLite's write lock directly. No award may fail with
+ * SQLITE_BUSY or be lost, and every user's xp must equal their events.
+ */
+class XpAwardConcurrencyTest {
+
+    private static final String DB = "build/xp-award-concurrency-test.db";
+    private static final int THREADS = 32;
+    private static final int AWARDS_PER_THREAD = 50;
+    private static final int USERS = 10;
+    private static final int AMOUNT = 3;
+
+    private ConfigurableApplicationContext context;
+
+    @BeforeEach
+    void start() {
+        new File(DB).delete();
+        context = new SpringApplication(MavPalApplication.class).run(
+                "--server.port=0", "--spring.datasource.url=jdbc:sqlite:" + DB);
+    }
+
+    @AfterEach
+    void stop() {
+        context.close();
+    }
+
+    @Test
+    void concurrentAwardsAreNeitherLostNorBusy() throws Exception {
+        UserRepository users = context.getBean(UserRepository.class);
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(users.save(new User(String.valueOf(1000000000 + i), "stress" + i + "@mavs.uta.edu",
+                    "Stress", "Test" + i, "hash")).getId());
+        }
+        XPService xpService = context.getBean(XPService.class);
+
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            workers.add(pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < AWARDS_PER_THREAD; i++) {
+                    // Every other award goes to the first user, the rest spread over all of them
+                    Integer userId = i % 2 == 0 ? userIds.get(0) : userIds.get((thread + i) % USERS);
+                    try {
+                        if (thread % 2 == 0) {
+                            xpService.awardXp(userId, AMOUNT, "daily_bonus", null).join();
+                        } else {
+                            xpService.award(userId, AMOUNT, "daily_bonus", null);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " awards failed, first: " + failures.peek());
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        assertEquals(THREADS * AWARDS_PER_THREAD * AMOUNT,
+                jdbc.queryForObject("SELECT SUM(xp) FROM users", Integer.class));
+        List<Map<String, Object>> drift = jdbc.queryForList("SELECT u.id, u.xp, "
+                + "(SELECT COALESCE(SUM(e.xp_amount), 0) FROM xp_events e WHERE e.user_id = u.id) AS event_xp "
+                + "FROM users u WHERE u.xp <> (SELECT COALESCE(SUM(e.xp_amount), 0) FROM xp_events e "
+                + "WHERE e.user_id = u.id)");
+        assertTrue(drift.isEmpty(), () -> "xp differs from xp_events for " + drift);
+    }
+}
@@ -0,0 +1,270 @@
+package com.mavpal.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of single-threaded lanes that run XP awards, sharded by user id.
+ *
+ * All of a user's awards go through the same lane, one at a time and in
+ * submission order. Work that awards XP as part of a larger unit (grading
+ * a quiz, completing the last checklist task, a request guarded by an
+ * Idempotency-Key) is submitted whole, so it commits with its award.
+ *
+ * Each lane takes whatever has queued up, up to {@code max-batch} awards,
+ * and runs it in one transaction, so under load a lane takes SQLite's
+ * write lock once per batch instead of once per award, and at most
+ * {@code count} lanes ever wait on it. A batch never holds two
+ * awards for one user: the daily cap counters only see an award once it
+ * commits, so the second one starts a new transaction. If any award in a
+ * batch fails, the batch is rolled back and each award is retried on its own.
+ *
+ * Queues are bounded; a submit to a full lane blocks until there is room.
+ * {@link #getStats()} reports depth, throughput and time spent blocked per
+ * lane; OpsStatsLogger writes them to the log periodically. Anything still
+ * queued at shutdown is run before the lanes stop.
+ */
+@Service
+public class XpAwardLanes {
+
+    @Value("${mavpal.xp-lanes.count:4}")
+    private int laneCount;
+
+    @Value("${mavpal.xp-lanes.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${mavpal.xp-lanes.max-batch:64}")
+    private int maxBatch;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final class Task {
+        final Integer userId;
+        final Supplier<?> work;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        final long queuedAt = System.nanoTime();
+
+        Task(Integer userId, Supplier<?> work) {
+            this.userId = userId;
+            this.work = work;
+        }
+    }
+
+    private final class Lane {
+        final int index;
+        final BlockingQueue<Task> queue;
+        final Thread thread;
+
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong transactions = new AtomicLong();
+        final AtomicLong largestBatch = new AtomicLong();
+        final AtomicLong highWater = new AtomicLong();
+        final AtomicLong blockedSubmits = new AtomicLong();
+        final AtomicLong blockedNanos = new AtomicLong();
+        final AtomicLong queueWaitNanos = new AtomicLong();
+
+        Lane(int index) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this::run, "xp-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void run() {
+            List<Task> batch = new ArrayList<>(maxBatch);
+            while (running || !queue.isEmpty()) {
+                try {
+                    Task first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                    runBatch(this, batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private Lane[] lanes;
+    private TransactionTemplate transactionTemplate;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        lanes = new Lane[Math.max(1, laneCount)];
+        running = true;
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+            lanes[i].thread.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread.join(TimeUnit.SECONDS.toMillis(5));
+            // Whatever was submitted while the lane was finishing up
+            List<Task> rest = new ArrayList<>();
+            lane.queue.drainTo(rest);
+            runBatch(lane, rest);
+        }
+    }
+
+    /**
+     * Run {@code work} in a transaction on the user's lane and complete the
+     * future with its result once that transaction commits. The caller must
+     * not wait on the future while holding a transaction of its own: the
+     * lane needs the write lock the caller has.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(Integer userId, Supplier<T> work) {
+        Task task = new Task(userId, work);
+        if (!running) {
+            // Shutting down; nothing will drain the queue
+            runGroup(null, List.of(task));
+            return (CompletableFuture<T>) task.result;
+        }
+
+        Lane lane = lanes[Math.floorMod(userId.hashCode(), lanes.length)];
+        lane.submitted.incrementAndGet();
+        if (!lane.queue.offer(task)) {
+            lane.blockedSubmits.incrementAndGet();
+            long blockedAt = System.nanoTime();
+            try {
+                lane.queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.failed.incrementAndGet();
+                task.result.completeExceptionally(e);
+            } finally {
+                lane.blockedNanos.addAndGet(System.nanoTime() - blockedAt);
+            }
+        }
+        lane.highWater.accumulateAndGet(lane.queue.size(), Math::max);
+        // stop() may have drained the lane between our check and the put; if the
+        // task is still there, nobody else will take it
+        if (!running && lane.queue.remove(task)) {
+            runGroup(null, List.of(task));
+        }
+        return (CompletableFuture<T>) task.result;
+    }
+
+    /**
+     * Per-lane backpressure and throughput counters. {@code queued} is the
+     * current depth and {@code highWater} the deepest it has been;
+     * {@code blockedSubmits} and {@code blockedMs} count submits that found
+     * the lane full and the time they waited for room.
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            long completed = lane.completed.get();
+            long transactions = lane.transactions.get();
+            Map<String, Object> map = new HashMap<>();
+            map.put("lane", lane.index);
+            map.put("queued", lane.queue.size());
+            map.put("capacity", queueCapacity);
+            map.put("highWater", lane.highWater.get());
+            map.put("submitted", lane.submitted.get());
+            map.put("completed", completed);
+            map.put("failed", lane.failed.get());
+            map.put("transactions", transactions);
+            map.put("avgBatch", transactions > 0 ? (double) (completed + lane.failed.get()) / transactions : 0.0);
+            map.put("largestBatch", lane.largestBatch.get());
+            map.put("blockedSubmits", lane.blockedSubmits.get());
+            map.put("blockedMs", TimeUnit.NANOSECONDS.toMillis(lane.blockedNanos.get()));
+            map.put("avgQueueWaitMs", completed > 0
+                    ? (double) TimeUnit.NANOSECONDS.toMicros(lane.queueWaitNanos.get()) / completed / 1000 : 0.0);
+            stats.add(map);
+        }
+        return stats;
+    }
+
+    private void runBatch(Lane lane, List<Task> batch) {
+        long now = System.nanoTime();
+        for (Task task : batch) {
+            lane.queueWaitNanos.addAndGet(now - task.queuedAt);
+        }
+        // Split wherever a user comes up a second time, keeping submission order
+        List<Task> group = new ArrayList<>();
+        Set<Integer> users = new HashSet<>();
+        for (Task task : batch) {
+            if (!users.add(task.userId)) {
+                runGroup(lane, group);
+                group = new ArrayList<>();
+                users.clear();
+                users.add(task.userId);
+            }
+            group.add(task);
+        }
+        runGroup(lane, group);
+    }
+
+    private void runGroup(Lane lane, List<Task> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        List<Object> results;
+        try {
+            results = transactionTemplate.execute(status -> {
+                List<Object> values = new ArrayList<>(group.size());
+                for (Task task : group) {
+                    values.add(task.work.get());
+                }
+                return values;
+            });
+        } catch (RuntimeException | Error e) {
+            if (group.size() > 1) {
+                // Rolled back as a whole; find the failing award by running each alone
+                for (Task task : group) {
+                    runGroup(lane, List.of(task));
+                }
+                return;
+            }
+            if (lane != null) {
+                lane.transactions.incrementAndGet();
+                lane.failed.incrementAndGet();
+            }
+            group.get(0).result.completeExceptionally(e);
+            return;
+        }
+
+        if (lane != null) {
+            lane.transactions.incrementAndGet();
+            lane.completed.addAndGet(group.size());
+            lane.largestBatch.accumulateAndGet(group.size(), Math::max);
+        }
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).result.complete(results.get(i));
+        }
+    }
+}
@@ -12,9 +12,18 @@ import java.util.List;
 public interface XpEventRepository extends JpaRepository<XpEvent, Integer> {
     List<XpEvent> findByUserId(Integer userId);
     
-    @Query(value = "SELECT COUNT(DISTINCT source_set) FROM xp_events WHERE user_id = :userId AND event_type = :eventType AND date(created_at) = date('now')", nativeQuery = true)
-    Long countDistinctSetsToday(@Param("userId") Integer userId, @Param("eventType") String eventType);
-    
-    @Query(value = "SELECT COUNT(*) FROM xp_events WHERE user_id = :userId AND source_set = :setId AND date(created_at) = date('now')", nativeQuery = true)
-    Long countEventsForSetToday(@Param("userId") Integer userId, @Param("setId") Integer setId);
+    // created_at is a date or an ISO date-time, so a day is a string range
+    @Query(value = "SELECT id, event_type, source_set FROM xp_events WHERE user_id = :userId AND source_set IS NOT NULL " +
+            "AND created_at >= :day AND created_at < date(:day, '+1 day')", nativeQuery = true)
+    List<Object[]> findSetEventsForDay(@Param("userId") Integer userId, @Param("day") String day);
+
+    // Without table statistics SQLite walks every row in user_id order to
+    // avoid sorting for the GROUP BY; a window only needs its own date range
+    @Query(value = "SELECT user_id, SUM(xp_amount) FROM xp_events INDEXED BY idx_xp_events_created_at " +
+            "WHERE created_at >= :since GROUP BY user_id HAVING SUM(xp_amount) > 0", nativeQuery = true)
+    List<Object[]> sumXpByUserSince(@Param("since") String since);
+
+    @Query(value = "SELECT e.user_id, SUM(e.xp_amount) FROM xp_events e JOIN sets s ON s.id = e.source_set " +
+            "WHERE s.subject = :subject GROUP BY e.user_id HAVING SUM(e.xp_amount) > 0", nativeQuery = true)
+    List<Object[]> sumXpByUserForSubject(@Param("subject") String subject);
 }
@@ -0,0 +1,66 @@
+package com.mavpal.service;
+
+import com.mavpal.entity.XpEvent;
+import com.mavpal.util.SqliteErrors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Inserts for xp_events.
+ *
+ * Each event is inserted in the transaction of the award it records, so
+ * the ledger commits or rolls back together with users.xp and
+ * xp_daily_rollup and is never behind the balance it backs. Batching
+ * happens one level up: an award lane (see XpAwardLanes) commits up to
+ * {@code max-batch} awards in one transaction, so under load SQLite syncs
+ * once per batch instead of once per award.
+ *
+ * Read-write transactions hold the write lock from the start (see
+ * DatabaseConfig), so event ids follow commit order: a reader that saw the
+ * ledger up to some id has seen every event that committed before it, and
+ * every event that commits later has a higher id.
+ *
+ * An event the database rejects (e.g. its set was deleted meanwhile) is
+ * moved to xp_events_dead_letter instead, in the same transaction, so the
+ * award still goes through and the event is kept for repair.
+ */
+@Service
+public class XpEventWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(XpEventWriter.class);
+
+    private static final String INSERT_SQL = "INSERT INTO xp_events "
+            + "(user_id, event_type, xp_amount, source_set, created_at) VALUES (?, ?, ?, ?, ?) RETURNING id";
+
+    private static final String DEAD_LETTER_SQL = "INSERT INTO xp_events_dead_letter "
+            + "(user_id, event_type, xp_amount, source_set, created_at, error) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert {@code event} as part of the current transaction, or on its own
+     * when there is none, and set its id. A rejected event keeps a null id.
+     */
+    public void write(XpEvent event) {
+        Object[] row = {event.getUserId(), event.getEventType(), event.getXpAmount(),
+                event.getSourceSet(), event.getCreatedAt()};
+        try {
+            event.setId(jdbcTemplate.queryForObject(INSERT_SQL, Integer.class, row));
+        } catch (DataAccessException e) {
+            if (!SqliteErrors.isConstraintViolation(e)) {
+                throw e;
+            }
+            // SQLite undoes only the failed statement, so the award's transaction carries on.
+            // The user's xp already counts the event, so it is kept for repair rather than dropped
+            String error = e.getMostSpecificCause().getMessage();
+            jdbcTemplate.update(DEAD_LETTER_SQL, row[0], row[1], row[2], row[3], row[4], error);
+            log.error("XP event for user {} ({} xp) rejected, moved to xp_events_dead_letter: {}",
+                    row[0], row[2], error);
+        }
+    }
+}
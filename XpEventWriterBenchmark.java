@@ -0,0 +1,117 @@
+package com.mavpal.benchmark;
+
+import com.mavpal.MavPalApplication;
+import com.mavpal.entity.User;
+import com.mavpal.entity.XpEvent;
+import com.mavpal.repository.UserRepository;
+import com.mavpal.repository.XpEventRepository;
+import com.mavpal.service.XpEventWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XP events written per second: one transaction per event (the old
+ * xpEventRepository.save path) against XpEventWriter inserts, one per
+ * transaction and {@link #LANE_BATCH} to a transaction as an award lane
+ * commits them under load. Results are kept in jmh-xp-events.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+public class XpEventWriterBenchmark {
+
+    private static final int EVENTS = 128;
+
+    // mavpal.xp-lanes.max-batch
+    private static final int LANE_BATCH = 64;
+
+    private ConfigurableApplicationContext context;
+    private XpEventRepository xpEventRepository;
+    private XpEventWriter xpEventWriter;
+    private TransactionTemplate transactions;
+    private Integer userId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        File database = new File("build/jmh/xp-events.db");
+        database.getParentFile().mkdirs();
+        database.delete();
+
+        context = new SpringApplication(MavPalApplication.class).run(
+                "--spring.datasource.url=jdbc:sqlite:" + database.getPath(),
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+        xpEventRepository = context.getBean(XpEventRepository.class);
+        xpEventWriter = context.getBean(XpEventWriter.class);
+        transactions = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        userId = context.getBean(UserRepository.class)
+                .save(new User("1000000001", "bench@mavs.uta.edu", "Bench", "User", "x"))
+                .getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void transactionPerEvent() {
+        for (int i = 0; i < EVENTS; i++) {
+            XpEvent event = newEvent();
+            transactions.executeWithoutResult(status -> xpEventRepository.save(event));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void writerPerTransaction() {
+        for (int i = 0; i < EVENTS; i++) {
+            transactions.executeWithoutResult(status -> xpEventWriter.write(newEvent()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void writerLaneBatch() {
+        for (int i = 0; i < EVENTS; i += LANE_BATCH) {
+            transactions.executeWithoutResult(status -> {
+                for (int j = 0; j < LANE_BATCH; j++) {
+                    xpEventWriter.write(newEvent());
+                }
+            });
+        }
+    }
+
+    private XpEvent newEvent() {
+        XpEvent event = new XpEvent();
+        event.setUserId(userId);
+        event.setEventType("quiz_complete");
+        event.setXpAmount(100);
+        event.setCreatedAt(LocalDate.now().toString());
+        return event;
+    }
+}
@@ -0,0 +1,220 @@
+package com.mavpal.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mavpal.entity.XpEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * XP history charts and the raw event drill-down behind them.
+ *
+ * Charts are served from xp_daily_rollup, one row per user, day and event
+ * type, which {@link #record} upserts in the same transaction as each award.
+ * Reading a chart therefore costs one row per active day regardless of how
+ * many events the user has. Raw events are only handed out a page at a time
+ * or streamed.
+ */
+@Service
+public class XpHistoryService {
+
+    public static final int MAX_HISTORY_DAYS = 366;
+    public static final int MAX_EVENT_PAGE_SIZE = 200;
+    private static final int STREAM_CHUNK_SIZE = 1000;
+
+    private static final String UPSERT_SQL = "INSERT INTO xp_daily_rollup (user_id, day, event_type, total_xp, event_count) "
+            + "VALUES (?, ?, ?, ?, 1) ON CONFLICT (user_id, day, event_type) "
+            + "DO UPDATE SET total_xp = total_xp + excluded.total_xp, event_count = event_count + 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Add {@code event} to its day's rollup row. Must run in the transaction
+     * that awards the XP, so the rollup and users.xp commit or roll back
+     * together.
+     */
+    public void record(XpEvent event) {
+        String createdAt = event.getCreatedAt();
+        String day = createdAt != null && createdAt.length() >= 10 ? createdAt.substring(0, 10) : LocalDate.now().toString();
+        jdbcTemplate.update(UPSERT_SQL, event.getUserId(), day, event.getEventType(), event.getXpAmount());
+    }
+
+    /**
+     * One point per {@code bucket} (DAY, WEEK or MONTH) from the bucket
+     * containing {@code from} through {@code to}, oldest first. Buckets with
+     * no activity are included with zero totals so charts need no gap filling.
+     *
+     * @throws IllegalArgumentException if the range is reversed or longer than
+     *         {@link #MAX_HISTORY_DAYS}
+     */
+    public List<Map<String, Object>> getHistory(Integer userId, LeaderboardWindow bucket, LocalDate from, LocalDate to) {
+        LocalDate start = bucket.bucketStart(from);
+        if (to.isBefore(from) || start.plusDays(MAX_HISTORY_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("Invalid range");
+        }
+
+        Map<LocalDate, Map<String, Object>> points = new LinkedHashMap<>();
+        for (LocalDate day = start; !day.isAfter(to); day = next(bucket, day)) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("start", day.toString());
+            point.put("totalXp", 0);
+            point.put("eventCount", 0);
+            point.put("byType", new HashMap<String, Integer>());
+            points.put(day, point);
+        }
+
+        jdbcTemplate.query("SELECT day, event_type, total_xp, event_count FROM xp_daily_rollup "
+                        + "WHERE user_id = ? AND day BETWEEN ? AND ?",
+                rs -> {
+                    Map<String, Object> point = points.get(bucket.bucketStart(LocalDate.parse(rs.getString(1))));
+                    int xp = rs.getInt(3);
+                    point.put("totalXp", (Integer) point.get("totalXp") + xp);
+                    point.put("eventCount", (Integer) point.get("eventCount") + rs.getInt(4));
+                    @SuppressWarnings("unchecked")
+                    Map<String, Integer> byType = (Map<String, Integer>) point.get("byType");
+                    byType.merge(rs.getString(2), xp, Integer::sum);
+                },
+                userId, start.toString(), to.toString());
+
+        return new ArrayList<>(points.values());
+    }
+
+    /**
+     * One page of raw events, newest first, keyed on (created_at, id).
+     * {@code cursor} is the "createdAt:id" of the last event on the previous
+     * page, or null for the first page; the response carries the cursor for
+     * the next page, or null at the end. {@code eventType}, {@code from} and
+     * {@code to} (inclusive days) are optional filters.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Map<String, Object> getEvents(Integer userId, String eventType, LocalDate from, LocalDate to,
+                                         String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_EVENT_PAGE_SIZE));
+        String afterCreatedAt = null;
+        int afterId = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            int split = cursor.lastIndexOf(':');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            afterCreatedAt = cursor.substring(0, split);
+            afterId = Integer.parseInt(cursor.substring(split + 1));
+        }
+
+        List<Map<String, Object>> events = new ArrayList<>(pageSize + 1);
+        queryEvents(userId, eventType, from, to, afterCreatedAt, afterId, pageSize + 1,
+                rs -> events.add(toMap(rs)));
+
+        String nextCursor = null;
+        if (events.size() > pageSize) {
+            events.remove(pageSize);
+            Map<String, Object> last = events.get(pageSize - 1);
+            nextCursor = last.get("createdAt") + ":" + last.get("id");
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("events", events);
+        response.put("nextCursor", nextCursor);
+        return response;
+    }
+
+    /**
+     * Write every matching event to {@code out} as newline-delimited JSON,
+     * newest first. Rows go straight from the JDBC cursor to the stream, so
+     * memory use does not grow with the user's history. The cursor is
+     * reopened every {@link #STREAM_CHUNK_SIZE} rows to release SQLite's read
+     * lock, so a slow client never holds up writers for long.
+     */
+    public void streamEvents(Integer userId, String eventType, LocalDate from, LocalDate to,
+                             OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        String[] afterCreatedAt = {null};
+        int[] afterId = {0};
+        int[] written = {0};
+        do {
+            written[0] = 0;
+            queryEvents(userId, eventType, from, to, afterCreatedAt[0], afterId[0], STREAM_CHUNK_SIZE, rs -> {
+                Map<String, Object> event = toMap(rs);
+                try {
+                    json.writeObject(event);
+                    json.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                afterCreatedAt[0] = (String) event.get("createdAt");
+                afterId[0] = (Integer) event.get("id");
+                written[0]++;
+            });
+            json.flush();
+        } while (written[0] == STREAM_CHUNK_SIZE);
+    }
+
+    private void queryEvents(Integer userId, String eventType, LocalDate from, LocalDate to,
+                             String afterCreatedAt, int afterId, int limit, RowCallbackHandler handler) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, event_type, xp_amount, source_set, created_at FROM xp_events WHERE user_id = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        if (afterCreatedAt != null) {
+            sql.append(" AND (created_at, id) < (?, ?)");
+            args.add(afterCreatedAt);
+            args.add(afterId);
+        }
+        if (eventType != null) {
+            sql.append(" AND event_type = ?");
+            args.add(eventType);
+        }
+        // created_at is a date or an ISO date-time, so day bounds compare as strings
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(from.toString());
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            args.add(to.plusDays(1).toString());
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        args.add(limit);
+        jdbcTemplate.query(sql.toString(), handler, args.toArray());
+    }
+
+    private static Map<String, Object> toMap(ResultSet rs) throws SQLException {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", rs.getInt("id"));
+        map.put("eventType", rs.getString("event_type"));
+        map.put("xpAmount", rs.getInt("xp_amount"));
+        map.put("sourceSet", rs.getObject("source_set") != null ? rs.getInt("source_set") : null);
+        map.put("createdAt", rs.getString("created_at"));
+        return map;
+    }
+
+    private static LocalDate next(LeaderboardWindow bucket, LocalDate start) {
+        switch (bucket) {
+            case WEEK:
+                return start.plusWeeks(1);
+            case MONTH:
+                return start.plusMonths(1);
+            default:
+                return start.plusDays(1);
+        }
+    }
+}
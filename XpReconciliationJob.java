@@ -0,0 +1,268 @@
+package com.mavpal.service;
+
+import com.mavpal.dto.LeaderboardEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Checks users.xp and users.level against the xp_events ledger, and
+ * optionally repairs them.
+ *
+ * The users table is split into id ranges that run in parallel on a
+ * ForkJoinPool. Each range of at most {@link #PARTITION_SIZE} ids is one
+ * query that sums every user's events, so memory use depends on the
+ * partition size, not on the number of events. Users that look wrong are
+ * checked again, and only confirmed mismatches are reported or repaired.
+ *
+ * A repair sets xp to the events total and level to match, one transaction
+ * per partition. An update only applies if xp has not changed since the
+ * check, so the job can run alongside live awards.
+ *
+ * xp_daily_rollup is updated by the award transaction itself, so a day
+ * with more events in the rollup than in xp_events means the ledger lost
+ * some (events used to be inserted after commit, and a crash dropped any
+ * still queued). Such users are reported as ledger gaps, on any day, and
+ * are never repaired downward: their events total is short of XP they
+ * earned.
+ *
+ * Set {@code mavpal.xp-reconcile.mode} to report or repair to run it in the
+ * background at startup.
+ */
+@Service
+public class XpReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(XpReconciliationJob.class);
+
+    private static final int PARTITION_SIZE = 256;
+    private static final int MAX_SAMPLES = 100;
+
+    private static final String TOTALS_SQL = "SELECT u.id, u.xp, u.level, "
+            + "(SELECT COALESCE(SUM(e.xp_amount), 0) FROM xp_events e WHERE e.user_id = u.id) FROM users u ";
+
+    // Days on which the user's awards counted more events than the ledger holds
+    private static final String LEDGER_GAP_SQL = "SELECT COUNT(*) FROM "
+            + "(SELECT day, SUM(event_count) AS counted FROM xp_daily_rollup WHERE user_id = ? GROUP BY day) r "
+            + "LEFT JOIN (SELECT substr(created_at, 1, 10) AS day, COUNT(*) AS logged FROM xp_events "
+            + "WHERE user_id = ? GROUP BY substr(created_at, 1, 10)) e ON e.day = r.day "
+            + "WHERE r.counted > COALESCE(e.logged, 0)";
+
+    @Value("${mavpal.xp-reconcile.mode:off}")
+    private String mode;
+
+    @Value("${mavpal.xp-reconcile.parallelism:4}")
+    private int parallelism;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private LevelCurve levelCurve;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (!"report".equals(mode) && !"repair".equals(mode)) {
+            return;
+        }
+        Thread worker = new Thread(() -> reconcile("repair".equals(mode)), "xp-reconcile");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Compare every user with their events, repairing mismatches when
+     * {@code repair} is set. The result has counts for the whole run and up
+     * to {@link #MAX_SAMPLES} of the mismatches found.
+     */
+    public Map<String, Object> reconcile(boolean repair) {
+        long started = System.currentTimeMillis();
+        Report report = new Report();
+
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(id) AS lo, MAX(id) AS hi FROM users");
+        if (range.get("lo") != null) {
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+            try {
+                pool.invoke(new Partition(this, ((Number) range.get("lo")).intValue(),
+                        ((Number) range.get("hi")).intValue(), repair, report));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        Map<String, Object> result = report.toMap();
+        result.put("repair", repair);
+        result.put("elapsedMs", System.currentTimeMillis() - started);
+        log.info("XP reconciliation: {} users, {} mismatches, {} repaired, {} with ledger gaps in {} ms",
+                result.get("usersChecked"), result.get("mismatches"), result.get("repaired"),
+                result.get("ledgerGaps"), result.get("elapsedMs"));
+        return result;
+    }
+
+    private static final class Partition extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient XpReconciliationJob job;
+        private final int lo;
+        private final int hi;
+        private final boolean repair;
+        private final transient Report report;
+
+        Partition(XpReconciliationJob job, int lo, int hi, boolean repair, Report report) {
+            this.job = job;
+            this.lo = lo;
+            this.hi = hi;
+            this.repair = repair;
+            this.report = report;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo < PARTITION_SIZE) {
+                job.check(lo, hi, repair, report);
+                return;
+            }
+            int mid = lo + (hi - lo) / 2;
+            invokeAll(new Partition(job, lo, mid, repair, report), new Partition(job, mid + 1, hi, repair, report));
+        }
+    }
+
+    private void check(int lo, int hi, boolean repair, Report report) {
+        List<int[]> rows = queryTotals("WHERE u.id BETWEEN ? AND ?", lo, hi);
+        report.usersChecked.addAndGet(rows.size());
+        List<Object> suspects = new ArrayList<>();
+        for (int[] row : rows) {
+            report.eventXp.addAndGet(row[3]);
+            if (isMismatch(row)) {
+                suspects.add(row[0]);
+            }
+        }
+        if (suspects.isEmpty()) {
+            return;
+        }
+
+        String inIds = "WHERE u.id IN (" + suspects.stream().map(id -> "?").collect(Collectors.joining(", ")) + ")";
+        if (!repair) {
+            for (int[] row : queryTotals(inIds, suspects.toArray())) {
+                if (isMismatch(row)) {
+                    report.add(row, hasLedgerGap(row[0]));
+                }
+            }
+            return;
+        }
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            // The write lock is held from here, so no award can commit until the repair does
+            List<Object[]> updates = new ArrayList<>();
+            List<int[]> confirmed = new ArrayList<>();
+            for (int[] row : queryTotals(inIds, suspects.toArray())) {
+                if (!isMismatch(row)) {
+                    continue;
+                }
+                boolean ledgerGap = hasLedgerGap(row[0]);
+                report.add(row, ledgerGap);
+                if (ledgerGap && row[3] < row[1]) {
+                    continue;
+                }
+                updates.add(new Object[]{row[3], levelCurve.levelFor(row[3]), row[0], row[1]});
+                confirmed.add(row);
+            }
+            if (updates.isEmpty()) {
+                return;
+            }
+            int[] counts = jdbcTemplate.batchUpdate("UPDATE users SET xp = ?, level = ? WHERE id = ? AND xp = ?", updates);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    report.skipped.incrementAndGet();
+                    continue;
+                }
+                int[] row = confirmed.get(i);
+                report.repaired.incrementAndGet();
+                LeaderboardEntry entry = leaderboardService.getEntry(row[0]);
+                if (entry != null) {
+                    leaderboardService.onXpCorrected(entry, row[3] - row[1]);
+                }
+            }
+        });
+    }
+
+    // Rows of id, xp, level and events total
+    private List<int[]> queryTotals(String where, Object... args) {
+        return jdbcTemplate.query(TOTALS_SQL + where,
+                (rs, rowNum) -> new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4)}, args);
+    }
+
+    private boolean hasLedgerGap(int userId) {
+        Integer days = jdbcTemplate.queryForObject(LEDGER_GAP_SQL, Integer.class, userId, userId);
+        return days != null && days > 0;
+    }
+
+    private boolean isMismatch(int[] row) {
+        return row[1] != row[3] || row[2] != levelCurve.levelFor(row[3]);
+    }
+
+    private final class Report {
+        final AtomicLong usersChecked = new AtomicLong();
+        final AtomicLong eventXp = new AtomicLong();
+        final AtomicLong mismatches = new AtomicLong();
+        final AtomicLong repaired = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong ledgerGaps = new AtomicLong();
+        final List<Map<String, Object>> samples = Collections.synchronizedList(new ArrayList<>());
+
+        void add(int[] row, boolean ledgerGap) {
+            mismatches.incrementAndGet();
+            if (ledgerGap) {
+                ledgerGaps.incrementAndGet();
+            }
+            synchronized (samples) {
+                if (samples.size() < MAX_SAMPLES) {
+                    Map<String, Object> sample = new HashMap<>();
+                    sample.put("userId", row[0]);
+                    sample.put("storedXp", row[1]);
+                    sample.put("eventXp", row[3]);
+                    sample.put("storedLevel", row[2]);
+                    sample.put("expectedLevel", levelCurve.levelFor(row[3]));
+                    sample.put("ledgerGap", ledgerGap);
+                    samples.add(sample);
+                }
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("usersChecked", usersChecked.get());
+            map.put("eventXp", eventXp.get());
+            map.put("mismatches", mismatches.get());
+            map.put("repaired", repaired.get());
+            map.put("skipped", skipped.get());
+            map.put("ledgerGaps", ledgerGaps.get());
+            synchronized (samples) {
+                map.put("samples", new ArrayList<>(samples));
+            }
+            return map;
+        }
+    }
+}
@@ -93,13 +93,114 @@ CREATE TABLE IF NOT EXISTS daily_task_status (
     UNIQUE (task_id, date)
 );
 
+CREATE TABLE IF NOT EXISTS xp_daily_rollup (
+    user_id INTEGER NOT NULL,
+    day TEXT NOT NULL,
+    event_type TEXT NOT NULL,
+    total_xp INTEGER NOT NULL DEFAULT 0,
+    event_count INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, day, event_type),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    user_id INTEGER NOT NULL,
+    scope TEXT NOT NULL,
+    idem_key TEXT NOT NULL,
+    request_hash TEXT NOT NULL,
+    response BLOB,
+    created_at TEXT NOT NULL,
+    PRIMARY KEY (user_id, scope, idem_key),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS level_curve (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    version TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS data_migrations (
+    name TEXT PRIMARY KEY,
+    completed_at TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS quiz_accepted_answers (
+    question_id INTEGER NOT NULL,
+    answer TEXT NOT NULL,
+    PRIMARY KEY (question_id, answer),
+    FOREIGN KEY (question_id) REFERENCES quiz_questions(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS quiz_choices (
+    question_id INTEGER NOT NULL,
+    choice_index INTEGER NOT NULL,
+    choice_text TEXT NOT NULL,
+    PRIMARY KEY (question_id, choice_index),
+    FOREIGN KEY (question_id) REFERENCES quiz_questions(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS user_set_best (
+    user_id INTEGER NOT NULL,
+    set_id INTEGER NOT NULL,
+    best_score REAL NOT NULL,
+    best_duration_ms INTEGER,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_attempt_at TEXT,
+    PRIMARY KEY (user_id, set_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (set_id) REFERENCES sets(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS question_stats (
+    question_id INTEGER PRIMARY KEY,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    answered INTEGER NOT NULL DEFAULT 0,
+    correct INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (question_id) REFERENCES quiz_questions(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS question_choice_stats (
+    question_id INTEGER NOT NULL,
+    choice_index INTEGER NOT NULL,
+    chosen INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (question_id, choice_index),
+    FOREIGN KEY (question_id) REFERENCES quiz_questions(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS xp_events_dead_letter (
+    event_id INTEGER PRIMARY KEY,
+    user_id INTEGER,
+    event_type TEXT,
+    xp_amount INTEGER,
+    source_set INTEGER,
+    created_at TEXT,
+    error TEXT,
+    failed_at TEXT DEFAULT (datetime('now'))
+);
+
+INSERT INTO xp_daily_rollup (user_id, day, event_type, total_xp, event_count)
+SELECT user_id, date(created_at), event_type, SUM(xp_amount), COUNT(*) FROM xp_events
+WHERE date(created_at) IS NOT NULL AND NOT EXISTS (SELECT 1 FROM xp_daily_rollup)
+GROUP BY user_id, date(created_at), event_type;
+
 CREATE INDEX IF NOT EXISTS idx_users_uta_id ON users(uta_id);
 CREATE INDEX IF NOT EXISTS idx_users_email ON users(email);
 CREATE INDEX IF NOT EXISTS idx_sets_created_by ON sets(created_by);
 CREATE INDEX IF NOT EXISTS idx_sets_visibility ON sets(visibility);
+CREATE INDEX IF NOT EXISTS idx_sets_subject ON sets(subject);
 CREATE INDEX IF NOT EXISTS idx_flashcards_set_id ON flashcards(set_id);
 CREATE INDEX IF NOT EXISTS idx_quiz_questions_set_id ON quiz_questions(set_id);
-CREATE INDEX IF NOT EXISTS idx_quiz_attempts_user_id ON quiz_attempts(user_id);
-CREATE INDEX IF NOT EXISTS idx_xp_events_user_id ON xp_events(user_id);
+DROP INDEX IF EXISTS idx_quiz_attempts_user_id;
+CREATE INDEX IF NOT EXISTS idx_quiz_attempts_user_set ON quiz_attempts(user_id, set_id);
+CREATE INDEX IF NOT EXISTS idx_quiz_attempts_user_recent ON quiz_attempts(user_id, id);
+CREATE INDEX IF NOT EXISTS idx_quiz_attempts_set_best ON quiz_attempts(set_id, user_id, score DESC, duration_ms);
+DROP INDEX IF EXISTS idx_xp_events_user_id;
+DROP INDEX IF EXISTS idx_xp_events_user_day;
+CREATE INDEX IF NOT EXISTS idx_xp_events_user_created ON xp_events(user_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_xp_events_created_at ON xp_events(created_at, user_id, xp_amount);
+CREATE INDEX IF NOT EXISTS idx_xp_events_source_set ON xp_events(source_set);
+CREATE INDEX IF NOT EXISTS idx_users_xp ON users(xp);
 CREATE INDEX IF NOT EXISTS idx_daily_tasks_user_id ON daily_tasks(user_id);
 CREATE INDEX IF NOT EXISTS idx_daily_task_status_task_date ON daily_task_status(task_id, date);
+CREATE INDEX IF NOT EXISTS idx_daily_task_status_date ON daily_task_status(date);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created_at ON idempotency_keys(created_at);